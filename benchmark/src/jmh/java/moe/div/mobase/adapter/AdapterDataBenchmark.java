@@ -0,0 +1,283 @@
+package moe.div.mobase.adapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+/**
+ * @author 林墨
+ * @time 20/6/27  14:05
+ * @desc MoBaseRecyclerAdapter数据操作里不依赖Android的部分：唯一键索引、事务通知合并、
+ * 过滤结果合并、有序模式归并，以及后台差异刷新用的ListDiffCallback和DiffUtil。
+ * 这些类是包内可见的，所以放在同一个包里；通知发给计数的回调，不经过RecyclerView
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdapterDataBenchmark {
+
+    /**
+     * 每次事务修改的位置数量
+     */
+    private static final int TRANSACTION_OPS = 64;
+
+    /**
+     * 加载更多一页的数量
+     */
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<Item> mList;
+
+    private KeyIndex mKeyIndex;
+
+    private long[] mLookupKeys;
+
+    private int mCursor;
+
+    private int[] mTouched;
+    private int[] mInserted;
+    private byte[] mOps;
+    private Object[] mPayloads;
+
+    /**
+     * 过滤：旧关键字的结果和变长后的新关键字的结果，新结果是旧结果的子序列
+     */
+    private int[] mOldIndices;
+    private int mOldCount;
+    private int[] mNewIndices;
+    private int mNewCount;
+
+    private List<Item> mPage;
+
+    private List<Item> mMerged;
+
+    /**
+     * 差异刷新：改动约1%的新数据，有删除、插入和内容变化
+     */
+    private List<Item> mDiffList;
+
+    private final CountingCallback mCounter = new CountingCallback();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mList = new ArrayList<Item>(size);
+        for (int i = 0; i < size; i++) {
+            // id间隔为2，加载更多的数据可以插在中间
+            mList.add(new Item(i * 2L, 0));
+        }
+        mKeyIndex = new KeyIndex();
+        rebuildKeyIndex();
+        mLookupKeys = new long[1024];
+        for (int i = 0; i < mLookupKeys.length; i++) {
+            mLookupKeys[i] = random.nextInt(size) * 2L;
+        }
+
+        mTouched = new int[TRANSACTION_OPS];
+        mInserted = new int[TRANSACTION_OPS];
+        mOps = new byte[TRANSACTION_OPS];
+        mPayloads = new Object[TRANSACTION_OPS];
+        int step = size / TRANSACTION_OPS;
+        for (int k = 0; k < TRANSACTION_OPS; k++) {
+            mTouched[k] = k * step + random.nextInt(step);
+            mInserted[k] = random.nextInt(3) == 0 ? 1 + random.nextInt(3) : 0;
+            mOps[k] = (byte) random.nextInt(3);
+        }
+
+        mOldIndices = new int[size];
+        mNewIndices = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(2) == 0) {
+                mOldIndices[mOldCount++] = i;
+                if (random.nextInt(3) != 0) {
+                    mNewIndices[mNewCount++] = i;
+                }
+            }
+        }
+
+        mPage = new ArrayList<Item>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            mPage.add(new Item(random.nextInt(size) * 2L + 1, 0));
+        }
+        Collections.sort(mPage, ID_ORDER);
+        mMerged = new ArrayList<Item>(size + PAGE_SIZE);
+
+        mDiffList = new ArrayList<Item>(mList);
+        for (int k = 0; k < size / 100; k++) {
+            int position = random.nextInt(mDiffList.size());
+            switch (k % 3) {
+                case 0:
+                    mDiffList.remove(position);
+                    break;
+                case 1:
+                    mDiffList.add(position, new Item(size * 2L + k, 0));
+                    break;
+                default:
+                    Item old = mDiffList.get(position);
+                    mDiffList.set(position, new Item(old.id, old.version + 1));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * getPositionByKey()在数据变化后第一次调用时重建索引
+     */
+    @Benchmark
+    public int keyIndexRebuild() {
+        rebuildKeyIndex();
+        return mKeyIndex.get(mLookupKeys[0]);
+    }
+
+    @Benchmark
+    public int keyIndexLookup() {
+        mCursor = (mCursor + 1) & (mLookupKeys.length - 1);
+        return mKeyIndex.get(mLookupKeys[mCursor]);
+    }
+
+    /**
+     * DataTransaction.commit()的通知：按原索引依次累加偏移，相邻的同类通知合并
+     */
+    @Benchmark
+    public int transactionDispatch() {
+        mCounter.reset();
+        BatchingListUpdateCallback callback = new BatchingListUpdateCallback(mCounter);
+        UpdateMerger.dispatchTransaction(mTouched, mInserted, mOps, mPayloads, callback);
+        callback.dispatchLastEvent();
+        return mCounter.events;
+    }
+
+    /**
+     * AdapterFilter应用结果时新旧结果的合并
+     */
+    @Benchmark
+    public int filterMerge() {
+        mCounter.reset();
+        BatchingListUpdateCallback callback = new BatchingListUpdateCallback(mCounter);
+        UpdateMerger.dispatchSubsequence(mOldIndices, mOldCount, mNewIndices, mNewCount, callback);
+        callback.dispatchLastEvent();
+        return mCounter.events;
+    }
+
+    /**
+     * SortedMode.addAll()把一页新数据归并进有序数据
+     */
+    @Benchmark
+    public int sortedMerge() {
+        mMerged.clear();
+        int[] inserted = UpdateMerger.mergeSorted(mList, mPage, ID_ORDER, mMerged);
+        return inserted[inserted.length - 1];
+    }
+
+    /**
+     * setDiffCallback()之后setData()在后台做的差异计算，和适配器使用同一个回调
+     */
+    @Benchmark
+    public int diff() {
+        mCounter.reset();
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                new ListDiffCallback<Item>(mList, mDiffList, ITEM_CALLBACK));
+        result.dispatchUpdatesTo(mCounter);
+        return mCounter.events;
+    }
+
+    /**
+     * 和MoBaseRecyclerAdapter.getPositionByKey()里的重建一致
+     */
+    private void rebuildKeyIndex() {
+        int count = mList.size();
+        mKeyIndex.reset(count);
+        for (int i = 0; i < count; i++) {
+            mKeyIndex.put(mList.get(i).id, i);
+        }
+    }
+
+    private static final Comparator<Item> ID_ORDER = new Comparator<Item>() {
+        @Override
+        public int compare(Item o1, Item o2) {
+            return o1.id < o2.id ? -1 : (o1.id == o2.id ? 0 : 1);
+        }
+    };
+
+    private static final DiffUtil.ItemCallback<Item> ITEM_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(Item oldItem, Item newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.version == newItem.version;
+        }
+    };
+
+    /**
+     * 列表数据，id是唯一键，version变化表示内容变化
+     */
+    static final class Item {
+
+        final long id;
+        final int version;
+
+        Item(long id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 只统计通知次数和范围，防止结果被优化掉
+     */
+    static final class CountingCallback implements ListUpdateCallback {
+
+        int events;
+        int items;
+
+        void reset() {
+            events = 0;
+            items = 0;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            events++;
+            items += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events++;
+            items += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            events++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            events++;
+            items += count;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package moe.div.mobase.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import moe.div.mobase.weiget.FlowLineBreaker;
+
+/**
+ * @author 林墨
+ * @time 20/6/27  10:40
+ * @desc FlowLayout换行计算的耗时，分别测全部重新换行和单个子控件变化后的增量换行
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlowLineBreakerBenchmark {
+
+    /**
+     * 行宽，相当于360dp的屏幕
+     */
+    private static final int MAX_WIDTH = 1080;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int childCount;
+
+    /**
+     * 最大行数，0表示不限制
+     */
+    @Param({"0", "2"})
+    public int maxLines;
+
+    private int[] mWidths;
+    private int[] mHeights;
+
+    private FlowLineBreaker mBreaker;
+
+    /**
+     * 每次变化的子控件
+     */
+    private int mChanged;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mWidths = new int[childCount];
+        mHeights = new int[childCount];
+        for (int i = 0; i < childCount; i++) {
+            // 标签宽度在60到300像素之间
+            mWidths[i] = 60 + random.nextInt(240);
+            mHeights[i] = 96;
+        }
+        mBreaker = new FlowLineBreaker();
+        mBreaker.setMaxWidth(MAX_WIDTH);
+        mBreaker.setMaxLines(maxLines == 0 ? Integer.MAX_VALUE : maxLines);
+        feed(mBreaker.restart(0));
+    }
+
+    @Benchmark
+    public int fullBreak() {
+        feed(mBreaker.restart(0));
+        return mBreaker.getLineCount();
+    }
+
+    /**
+     * 模拟中间某个标签选中后变宽又恢复
+     */
+    @Benchmark
+    public int incrementalBreak() {
+        int index = mChanged;
+        mChanged = (mChanged + childCount / 2 + 1) % childCount;
+        mWidths[index] += (mWidths[index] & 1) == 0 ? 41 : -41;
+        feed(mBreaker.restart(mBreaker.getLineForChild(Math.max(0, index - 1))));
+        return mBreaker.getLineCount();
+    }
+
+    private void feed(int start) {
+        for (int i = start; i < childCount; i++) {
+            if (!mBreaker.append(mWidths[i], mHeights[i])) {
+                break;
+            }
+        }
+        mBreaker.finish();
+    }
+}
@@ -0,0 +1,70 @@
+package moe.div.mobase.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import moe.div.mobase.adapter.SectionIndex;
+
+/**
+ * @author 林墨
+ * @time 20/6/27  11:15
+ * @desc 分组列表位置换算的耗时，对应每次绑定时的getItemViewType()和局部刷新一组
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SectionIndexBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int sectionCount;
+
+    private SectionIndex mIndex;
+
+    private int[] mPositions;
+
+    private int mCursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int[] counts = new int[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            counts[i] = random.nextInt(20);
+        }
+        mIndex = new SectionIndex();
+        mIndex.setItemCounts(counts);
+        mPositions = new int[1024];
+        for (int i = 0; i < mPositions.length; i++) {
+            mPositions[i] = random.nextInt(mIndex.getTotalCount());
+        }
+    }
+
+    @Benchmark
+    public int sectionForPosition() {
+        mCursor = (mCursor + 1) & (mPositions.length - 1);
+        return mIndex.getSectionForPosition(mPositions[mCursor]);
+    }
+
+    @Benchmark
+    public int offsetInSection() {
+        mCursor = (mCursor + 1) & (mPositions.length - 1);
+        return mIndex.getOffsetInSection(mPositions[mCursor]);
+    }
+
+    @Benchmark
+    public int resizeSection() {
+        mCursor = (mCursor + 1) & (mPositions.length - 1);
+        int section = mPositions[mCursor] % sectionCount;
+        mIndex.setItemCount(section, mCursor & 15);
+        return mIndex.getTotalCount();
+    }
+}
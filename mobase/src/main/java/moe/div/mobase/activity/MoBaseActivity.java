@@ -3,23 +3,19 @@ package moe.div.mobase.activity;
 import android.content.DialogInterface;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.Message;
-import android.view.Gravity;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.lang.ref.WeakReference;
-
 import androidx.annotation.DrawableRes;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import moe.div.mobase.R;
+import moe.div.mobase.weiget.LoadingController;
 import moe.div.mobase.weiget.LoadingDialog;
+import moe.div.mobase.weiget.SafeScheduler;
+import moe.div.mobase.weiget.ToastController;
 
 /**
  * @author 林墨
@@ -29,12 +25,13 @@ import moe.div.mobase.weiget.LoadingDialog;
 public abstract class MoBaseActivity extends AppCompatActivity {
 
     /**
-     * 通过软连接持有的Handler引用
+     * 通过软连接持有界面的Handler，界面销毁时自动移除所有等待的消息，
+     * 重复的刷新消息可以用debounce()/throttle()合并
      */
-    protected Handler mHandler;
+    protected SafeScheduler<MoBaseActivity> mHandler;
 
     /**
-     * 吐司对象，可以防止吐司不断出现新的
+     * 最近显示的吐司对象，由mToastController复用
      */
     protected Toast mSucceedToast;
 
@@ -44,8 +41,21 @@ public abstract class MoBaseActivity extends AppCompatActivity {
     protected TextView mToastHint;
 
     /**
-     * 加载等待对话框对象
+     * 吐司控制，复用吐司布局并合并重复的吐司
+     */
+    protected ToastController mToastController;
+
+    /**
+     * 加载等待对话框控制，整个界面和其中的MoBaseFragment共用同一个对话框
      */
+    protected LoadingController mLoadingController;
+
+    /**
+     * 加载等待对话框对象，显示过之后指向mLoadingController复用的对话框
+     * @deprecated 对话框由mLoadingController统一显示和隐藏，请使用{@link LoadingController#getDialog()}，
+     * 不要直接show()、dismiss()或替换
+     */
+    @Deprecated
     protected LoadingDialog mProgressDialog;
 
     @Override
@@ -53,6 +63,8 @@ public abstract class MoBaseActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         // 创建安全Handler
         mHandler = new SafeHandler(this);
+        mLoadingController = new LoadingController(this);
+        mToastController = new ToastController(this);
         // 初始化视图
         initView(savedInstanceState);
         // 初始化数据
@@ -61,6 +73,14 @@ public abstract class MoBaseActivity extends AppCompatActivity {
         initEvent();
     }
 
+    @Override
+    protected void onDestroy() {
+        mHandler.destroy();
+        mLoadingController.release();
+        mToastController.release();
+        super.onDestroy();
+    }
+
     /**
      * 初始化视图，该方法中必须setContentView
      * @param savedInstanceState    由onCreate()方法传递过来
@@ -81,23 +101,20 @@ public abstract class MoBaseActivity extends AppCompatActivity {
     /**
      * 通过软连接保存的Handler,避免产生内存泄漏
      */
-    private static class SafeHandler extends Handler {
-
-        WeakReference<MoBaseActivity> mWeakReference;
+    private static class SafeHandler extends SafeScheduler<MoBaseActivity> {
 
         SafeHandler(MoBaseActivity activity){
-            mWeakReference = new WeakReference<MoBaseActivity>(activity);
+            super(activity);
         }
 
         @Override
-        public void handleMessage(Message msg) {
-            MoBaseActivity activity = mWeakReference.get();
+        protected void handleMessage(MoBaseActivity activity, Message msg) {
             activity.handleSafeMessage(msg);
         }
     }
 
     /**
-     * 处理Handler消息的方法
+     * 处理Handler消息的方法，界面销毁之后不会再调用
      * @param msg   Handler消息
      */
     protected void handleSafeMessage(Message msg){
@@ -125,7 +142,8 @@ public abstract class MoBaseActivity extends AppCompatActivity {
      * @param text  显示文本
      */
     public void showToast(String text){
-        Toast.makeText(this, text, Toast.LENGTH_SHORT).show();
+        mToastController.showText(text);
+        mSucceedToast = mToastController.getToast();
     }
 
     /**
@@ -136,40 +154,23 @@ public abstract class MoBaseActivity extends AppCompatActivity {
     }
 
     /**
-     * 显示成功 Toast
+     * 显示成功 Toast，布局只加载一次，重复的内容会合并
      * @param hint  显示文本
      */
     public void showSucceedToast(String hint){
-        mSucceedToast = Toast.makeText(getApplicationContext(), "Normarl toast", Toast.LENGTH_SHORT);
-        mSucceedToast.setGravity(Gravity.CENTER, 0, 0);
-        LayoutInflater inflater = LayoutInflater.from(this);
-        View view = inflater.inflate(R.layout.toast_vote_succeed_layout, null);
-        mToastHint = (TextView) view.findViewById(R.id.hint_text);
-        mSucceedToast.setView(view);
-        if(hint != null){
-            mToastHint.setText(hint);
-        }
-        mSucceedToast.show();
+        mToastHint = mToastController.getSucceedHint();
+        mToastController.showSucceed(hint);
+        mSucceedToast = mToastController.getToast();
     }
 
     /**
-     * 显示提示吐司
+     * 显示提示吐司，布局只加载一次，重复的内容会合并
      * @param resId     图片资源ID
      * @param hint      显示文本
      */
     public void showMoToast(@DrawableRes int resId, String hint){
-        mSucceedToast = Toast.makeText(getApplicationContext(), "Normarl toast", Toast.LENGTH_SHORT);
-        mSucceedToast.setGravity(Gravity.CENTER, 0, 0);
-        LayoutInflater inflater = LayoutInflater.from(this);
-        View view = inflater.inflate(R.layout.toast_info_layout, null);
-        ImageView hintImage = (ImageView) view.findViewById(R.id.hint_image);
-        TextView hintText = (TextView) view.findViewById(R.id.hint_text);
-        mSucceedToast.setView(view);
-        hintImage.setImageResource(resId);
-        if(hint != null){
-            hintText.setText(hint);
-        }
-        mSucceedToast.show();
+        mToastController.showInfo(resId, hint);
+        mSucceedToast = mToastController.getToast();
     }
 
     /**
@@ -184,7 +185,7 @@ public abstract class MoBaseActivity extends AppCompatActivity {
      * @param cancelable    是否可以取消
      */
     public void showProgressDialog(boolean cancelable){
-        showProgressDialog(false, null);
+        showProgressDialog(cancelable, null);
     }
 
     /**
@@ -193,25 +194,44 @@ public abstract class MoBaseActivity extends AppCompatActivity {
      * @param cancelListener    取消监听器
      */
     public void showProgressDialog(boolean cancelable, DialogInterface.OnCancelListener cancelListener){
-        if(mProgressDialog != null){
-            mProgressDialog.dismiss();
-            mProgressDialog = null;
-        }
-        // 初始化等待对话框
-        mProgressDialog = new LoadingDialog(this);
-        mProgressDialog.setCancelable(cancelable);
-        mProgressDialog.setOnCancelListener(cancelListener);
-        mProgressDialog.show();
+        // 超过宽限时间才显示，很快结束的请求不会闪一下
+        mLoadingController.show(cancelable, cancelListener);
+        mProgressDialog = mLoadingController.obtainDialog();
     }
 
 
     /**
-     * 隐藏等待对话框
+     * 隐藏等待对话框，已经显示的至少保持最短显示时间
      */
     public void hideProgressDialog(){
-        if(mProgressDialog != null && mProgressDialog.isShowing()){
-            mProgressDialog.dismiss();
-        }
+        mLoadingController.hide();
+    }
+
+    /**
+     * 为一个操作显示加载等待对话框，多个操作同时进行时只显示一个
+     * @param token             操作标记，结束时用同一个对象调用hideProgressDialog(Object)
+     * @param cancelable        是否可以取消
+     * @param cancelListener    取消监听器
+     */
+    public void showProgressDialog(Object token, boolean cancelable, DialogInterface.OnCancelListener cancelListener){
+        mLoadingController.show(token, cancelable, cancelListener);
+        mProgressDialog = mLoadingController.obtainDialog();
+    }
+
+    /**
+     * 结束一个操作，所有操作都结束后才隐藏等待对话框
+     * @param token     显示时使用的操作标记
+     */
+    public void hideProgressDialog(Object token){
+        mLoadingController.hide(token);
+    }
+
+    /**
+     * 获取加载等待对话框控制，MoBaseFragment通过它和界面共用对话框
+     * @return  加载等待对话框控制
+     */
+    public LoadingController getLoadingController(){
+        return mLoadingController;
     }
 
     /**
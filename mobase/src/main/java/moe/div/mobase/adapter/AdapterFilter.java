@@ -0,0 +1,235 @@
+package moe.div.mobase.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * @author 林墨
+ * @time 20/5/2  15:40
+ * @desc 适配器的后台过滤，原始数据与显示的数据分开保存。
+ * 过滤结果用原始数据的索引表示，新旧结果都是原始数据的子序列，合并一遍就能得到局部通知；
+ * 原始数据整体替换后索引对不上，在后台用差异比较回调或唯一键比较新旧显示的数据；
+ * 新关键字以旧关键字开头时只在上一次的结果里继续过滤
+ */
+final class AdapterFilter<T> {
+
+    /**
+     * 每过滤多少项检查一次是否已被新的搜索取消
+     */
+    private static final int CANCEL_CHECK_MASK = 0xFF;
+
+    private final MoBaseRecyclerAdapter<T, ?> mAdapter;
+
+    private final MoBaseRecyclerAdapter.ItemFilter<T> mFilter;
+
+    /**
+     * 原始数据，只整体替换不修改
+     */
+    private List<T> mSource = Collections.emptyList();
+
+    /**
+     * 原始数据的版本，替换一次加一
+     */
+    private int mSourceVersion;
+
+    /**
+     * 当前显示结果在原始数据中的索引，升序
+     */
+    private int[] mIndices = new int[0];
+
+    /**
+     * 当前显示结果的数量
+     */
+    private int mCount;
+
+    /**
+     * 当前显示结果对应的原始数据版本
+     */
+    private int mIndicesVersion = -1;
+
+    /**
+     * 上一次应用结果之后适配器的数据修改次数，对不上说明显示的数据被其它方法改过，mIndices已经不能代表它
+     */
+    private int mPublishedModCount;
+
+    /**
+     * 当前显示结果对应的关键字
+     */
+    private String mQuery = "";
+
+    /**
+     * 最近一次请求的关键字
+     */
+    private String mRequestedQuery = "";
+
+    /**
+     * 最新一次过滤的代号，旧代号的计算会中途退出
+     */
+    private volatile int mGeneration;
+
+    AdapterFilter(MoBaseRecyclerAdapter<T, ?> adapter, MoBaseRecyclerAdapter.ItemFilter<T> filter) {
+        mAdapter = adapter;
+        mFilter = filter;
+    }
+
+    List<T> getSource() {
+        return mSource;
+    }
+
+    String getQuery() {
+        return mRequestedQuery;
+    }
+
+    /**
+     * 替换原始数据，并用当前关键字重新过滤
+     * @param data          原始数据
+     * @param executor      过滤使用的线程池
+     */
+    void setSource(List<T> data, Executor executor) {
+        mSource = data == null ? Collections.<T>emptyList() : new ArrayList<T>(data);
+        mSourceVersion++;
+        run(mRequestedQuery, executor);
+    }
+
+    /**
+     * 按关键字过滤，会取消还没完成的上一次过滤
+     * @param query         关键字
+     * @param executor      过滤使用的线程池
+     */
+    void filter(CharSequence query, Executor executor) {
+        mRequestedQuery = query == null ? "" : query.toString();
+        run(mRequestedQuery, executor);
+    }
+
+    /**
+     * 取消还没完成的过滤
+     */
+    void cancel() {
+        mGeneration++;
+    }
+
+    private void run(final String query, final Executor executor) {
+        final int generation = ++mGeneration;
+        final List<T> source = mSource;
+        final int sourceVersion = mSourceVersion;
+        final int modCount = mAdapter.mModCount;
+        // 显示的数据在两次过滤之间被addData()、事务等改过时，mIndices也已经不能代表它
+        final boolean subsequence = mIndicesVersion == sourceVersion && modCount == mPublishedModCount;
+        // 原始数据没变并且关键字只是变长了，只需要在上一次的结果里继续过滤
+        final boolean incremental = subsequence && mQuery.length() > 0 && query.startsWith(mQuery);
+        final int[] base = incremental ? mIndices : null;
+        final int baseCount = incremental ? mCount : source.size();
+        // 索引对不上时比较新旧显示的数据，旧数据先复制一份给后台用
+        final DiffUtil.ItemCallback<T> callback = subsequence ? null : obtainItemCallback();
+        final List<T> oldVisible = callback == null ? null : new ArrayList<T>(mAdapter.getData());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] result = new int[baseCount];
+                int count = 0;
+                for (int k = 0; k < baseCount; k++) {
+                    if ((k & CANCEL_CHECK_MASK) == 0 && generation != mGeneration) {
+                        return;
+                    }
+                    int index = base == null ? k : base[k];
+                    if (query.length() == 0 || mFilter.accept(source.get(index), query)) {
+                        result[count++] = index;
+                    }
+                }
+                final List<T> visible = new ArrayList<T>(count);
+                for (int k = 0; k < count; k++) {
+                    visible.add(source.get(result[k]));
+                }
+                if (generation != mGeneration) {
+                    return;
+                }
+                final DiffUtil.DiffResult diff = oldVisible == null ? null
+                        : DiffUtil.calculateDiff(new ListDiffCallback<T>(oldVisible, visible, callback));
+                final int resultCount = count;
+                MoBaseRecyclerAdapter.MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        if (modCount != mAdapter.mModCount) {
+                            // 计算期间显示的数据被改过，结果已经对不上，基于当前数据重新过滤
+                            AdapterFilter.this.run(query, executor);
+                            return;
+                        }
+                        publish(query, sourceVersion, result, resultCount, visible, subsequence, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 获取比较新旧显示数据的回调，优先使用差异比较回调，其次按唯一键比较
+     * @return  比较回调，两者都没有设置时为null
+     */
+    private DiffUtil.ItemCallback<T> obtainItemCallback() {
+        if (mAdapter.mDiffCallback != null) {
+            return mAdapter.mDiffCallback;
+        }
+        if (mAdapter.mKeyExtractor != null) {
+            return new KeyItemCallback<T>(mAdapter.mKeyExtractor);
+        }
+        return null;
+    }
+
+    /**
+     * 在主线程应用过滤结果
+     */
+    private void publish(String query, int sourceVersion, int[] indices, int count, List<T> visible,
+                         boolean subsequence, DiffUtil.DiffResult diff) {
+        int[] oldIndices = mIndices;
+        int oldCount = mCount;
+        mIndices = indices;
+        mCount = count;
+        mIndicesVersion = sourceVersion;
+        mQuery = query;
+        mAdapter.mList = visible;
+        mAdapter.mModCount++;
+        mPublishedModCount = mAdapter.mModCount;
+        if (subsequence) {
+            BatchingListUpdateCallback callback =
+                    new BatchingListUpdateCallback(new AdapterListUpdateCallback(mAdapter));
+            UpdateMerger.dispatchSubsequence(oldIndices, oldCount, indices, count, callback);
+            callback.dispatchLastEvent();
+        } else if (diff != null) {
+            diff.dispatchUpdatesTo(mAdapter);
+        } else {
+            // 没有唯一键也没有差异比较回调，无法识别同一个子项，只能整体刷新
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * 按唯一键识别同一个子项，内容用equals()比较
+     */
+    private static final class KeyItemCallback<T> extends DiffUtil.ItemCallback<T> {
+
+        private final MoBaseRecyclerAdapter.KeyExtractor<T> mKeyExtractor;
+
+        KeyItemCallback(MoBaseRecyclerAdapter.KeyExtractor<T> keyExtractor) {
+            mKeyExtractor = keyExtractor;
+        }
+
+        @Override
+        public boolean areItemsTheSame(T oldItem, T newItem) {
+            return mKeyExtractor.getKey(oldItem) == mKeyExtractor.getKey(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(T oldItem, T newItem) {
+            return oldItem == null ? newItem == null : oldItem.equals(newItem);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package moe.div.mobase.adapter;
+
+import android.os.Trace;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author 林墨
+ * @time 20/5/30  16:20
+ * @desc 按视图类型统计创建、绑定耗时，同时输出systrace区段。
+ * 耗时记录在对数分桶的直方图里，记录过程不创建对象，只能在主线程使用。
+ * 另外记录首次布局和首次滑动两个阶段的总耗时和其中主线程创建、绑定的次数，
+ * 用来对比开启{@link MoBaseRecyclerAdapter#prewarmViewHolders}前后的效果。
+ * 通过{@link MoBaseRecyclerAdapter#setTimingsEnabled(boolean)}开启，需要在setAdapter()之前开启才能记录首次布局
+ */
+public class AdapterTimings {
+
+    /**
+     * 创建ViewHolder
+     */
+    public static final int KIND_CREATE = 0;
+
+    /**
+     * 绑定数据
+     */
+    public static final int KIND_BIND = 1;
+
+    /**
+     * 阶段：适配器绑定到列表，到第一次布局出子项
+     */
+    public static final int PHASE_STARTUP = 0;
+
+    /**
+     * 阶段：第一次拖动列表，到滑动停止
+     */
+    public static final int PHASE_FIRST_SCROLL = 1;
+
+    /**
+     * 小于该值(微秒)的耗时每微秒一个桶
+     */
+    private static final int LINEAR_BUCKETS = 16;
+
+    /**
+     * 之后每翻一倍分成几个桶
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int BUCKET_COUNT = 128;
+
+    /**
+     * 操作种类的数量
+     */
+    private static final int KIND_COUNT = 2;
+
+    /**
+     * 各视图类型的统计
+     */
+    private final SparseArray<TypeStats> mStats = new SparseArray<TypeStats>();
+
+    /**
+     * 首次布局和首次滑动
+     */
+    private final Phase[] mPhases = {new Phase(), new Phase()};
+
+    /**
+     * 预创建放进缓存池的ViewHolder数量
+     */
+    private int mPrewarmedHolders;
+
+    /**
+     * 开始计时
+     * @param kind      {@link #KIND_CREATE}或{@link #KIND_BIND}
+     * @param viewType  视图类型
+     * @return  开始时间，传给{@link #end(int, int, long)}
+     */
+    public long begin(int kind, int viewType) {
+        Trace.beginSection(getStats(viewType).sectionNames[kind]);
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束计时并记录
+     * @param kind      {@link #KIND_CREATE}或{@link #KIND_BIND}
+     * @param viewType  视图类型
+     * @param start     {@link #begin(int, int)}返回的开始时间
+     */
+    public void end(int kind, int viewType, long start) {
+        long micros = (System.nanoTime() - start) / 1000;
+        Trace.endSection();
+        getStats(viewType).histograms[kind].record(micros);
+        for (Phase phase : mPhases) {
+            if (phase.running) {
+                phase.counts[kind]++;
+                phase.micros[kind] += micros;
+            }
+        }
+    }
+
+    /**
+     * 开始一个阶段，每个阶段只记录一次
+     * @param phase     {@link #PHASE_STARTUP}或{@link #PHASE_FIRST_SCROLL}
+     */
+    void beginPhase(int phase) {
+        Phase stats = mPhases[phase];
+        if (stats.running || stats.finished) {
+            return;
+        }
+        stats.running = true;
+        stats.start = System.nanoTime();
+    }
+
+    /**
+     * 结束一个阶段，没有开始时忽略
+     * @param phase     {@link #PHASE_STARTUP}或{@link #PHASE_FIRST_SCROLL}
+     */
+    void endPhase(int phase) {
+        Phase stats = mPhases[phase];
+        if (!stats.running) {
+            return;
+        }
+        stats.running = false;
+        stats.finished = true;
+        stats.duration = (System.nanoTime() - stats.start) / 1000;
+        stats.prewarmedHolders = mPrewarmedHolders;
+    }
+
+    /**
+     * 记录预创建放进缓存池的数量
+     * @param count     数量
+     */
+    void onPrewarmed(int count) {
+        mPrewarmedHolders += count;
+    }
+
+    /**
+     * 获取阶段的统计结果
+     * @param phase     {@link #PHASE_STARTUP}或{@link #PHASE_FIRST_SCROLL}
+     * @return  统计结果，阶段还没结束时为null
+     */
+    public PhaseSnapshot getPhase(int phase) {
+        Phase stats = mPhases[phase];
+        return stats.finished ? new PhaseSnapshot(phase, stats) : null;
+    }
+
+    /**
+     * 获取当前统计结果
+     * @return  每个视图类型、每种操作一条，没有记录的不返回
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> result = new ArrayList<Snapshot>();
+        for (int i = 0; i < mStats.size(); i++) {
+            TypeStats stats = mStats.valueAt(i);
+            for (int kind = KIND_CREATE; kind <= KIND_BIND; kind++) {
+                Histogram histogram = stats.histograms[kind];
+                if (histogram.count > 0) {
+                    result.add(new Snapshot(stats.viewType, kind, histogram));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 清空各视图类型的统计，阶段耗时只记录一次，不会清空
+     */
+    public void reset() {
+        for (int i = 0; i < mStats.size(); i++) {
+            TypeStats stats = mStats.valueAt(i);
+            stats.histograms[KIND_CREATE].clear();
+            stats.histograms[KIND_BIND].clear();
+        }
+    }
+
+    private TypeStats getStats(int viewType) {
+        TypeStats stats = mStats.get(viewType);
+        if (stats == null) {
+            // 每种类型只在第一次出现时创建
+            stats = new TypeStats(viewType);
+            mStats.put(viewType, stats);
+        }
+        return stats;
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        int bucket = LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + sub;
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶的上界，单位微秒
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = ((bucket - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 4;
+        int sub = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * 单个视图类型的统计
+     */
+    private static final class TypeStats {
+
+        final int viewType;
+
+        final String[] sectionNames;
+
+        final Histogram[] histograms = {new Histogram(), new Histogram()};
+
+        TypeStats(int viewType) {
+            this.viewType = viewType;
+            this.sectionNames = new String[]{"MoBase create " + viewType, "MoBase bind " + viewType};
+        }
+    }
+
+    /**
+     * 一个阶段的计时和其中的创建、绑定次数
+     */
+    private static final class Phase {
+
+        boolean running;
+
+        boolean finished;
+
+        long start;
+
+        /**
+         * 阶段总耗时，单位微秒
+         */
+        long duration;
+
+        final int[] counts = new int[KIND_COUNT];
+
+        /**
+         * 创建、绑定的累计耗时，单位微秒
+         */
+        final long[] micros = new long[KIND_COUNT];
+
+        int prewarmedHolders;
+    }
+
+    /**
+     * 对数分桶直方图
+     */
+    private static final class Histogram {
+
+        final int[] buckets = new int[BUCKET_COUNT];
+
+        long count;
+
+        long max;
+
+        void record(long micros) {
+            buckets[bucketOf(micros)]++;
+            count++;
+            if (micros > max) {
+                max = micros;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            max = 0;
+        }
+
+        long percentile(double percent) {
+            long target = (long) Math.ceil(count * percent);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * 一个阶段的统计结果，耗时单位微秒。创建次数只包含主线程上计时的创建，
+     * 预创建的ViewHolder从缓存池取出时不再计入
+     */
+    public static final class PhaseSnapshot {
+
+        private final int mPhase;
+        private final long mDuration;
+        private final int mCreateCount;
+        private final long mCreateTime;
+        private final int mBindCount;
+        private final long mBindTime;
+        private final int mPrewarmedHolders;
+
+        PhaseSnapshot(int phase, Phase stats) {
+            mPhase = phase;
+            mDuration = stats.duration;
+            mCreateCount = stats.counts[KIND_CREATE];
+            mCreateTime = stats.micros[KIND_CREATE];
+            mBindCount = stats.counts[KIND_BIND];
+            mBindTime = stats.micros[KIND_BIND];
+            mPrewarmedHolders = stats.prewarmedHolders;
+        }
+
+        /**
+         * @return  {@link #PHASE_STARTUP}或{@link #PHASE_FIRST_SCROLL}
+         */
+        public int getPhase() {
+            return mPhase;
+        }
+
+        /**
+         * @return  阶段总耗时
+         */
+        public long getDuration() {
+            return mDuration;
+        }
+
+        public int getCreateCount() {
+            return mCreateCount;
+        }
+
+        public long getCreateTime() {
+            return mCreateTime;
+        }
+
+        public int getBindCount() {
+            return mBindCount;
+        }
+
+        public long getBindTime() {
+            return mBindTime;
+        }
+
+        /**
+         * @return  阶段结束时已经预创建放进缓存池的数量，为0表示没有开启预创建
+         */
+        public int getPrewarmedHolders() {
+            return mPrewarmedHolders;
+        }
+
+        @Override
+        public String toString() {
+            return (mPhase == PHASE_STARTUP ? "startup" : "first scroll") + " " + mDuration
+                    + "us create n=" + mCreateCount + " " + mCreateTime + "us bind n=" + mBindCount
+                    + " " + mBindTime + "us prewarmed=" + mPrewarmedHolders;
+        }
+    }
+
+    /**
+     * 某个视图类型某种操作的统计结果，耗时单位微秒，分位数精确到所在桶的上界
+     */
+    public static final class Snapshot {
+
+        private final int mViewType;
+        private final int mKind;
+        private final long mCount;
+        private final long mP50;
+        private final long mP95;
+        private final long mP99;
+        private final long mMax;
+
+        Snapshot(int viewType, int kind, Histogram histogram) {
+            mViewType = viewType;
+            mKind = kind;
+            mCount = histogram.count;
+            mP50 = histogram.percentile(0.50);
+            mP95 = histogram.percentile(0.95);
+            mP99 = histogram.percentile(0.99);
+            mMax = histogram.max;
+        }
+
+        public int getViewType() {
+            return mViewType;
+        }
+
+        /**
+         * @return  {@link #KIND_CREATE}或{@link #KIND_BIND}
+         */
+        public int getKind() {
+            return mKind;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getP50() {
+            return mP50;
+        }
+
+        public long getP95() {
+            return mP95;
+        }
+
+        public long getP99() {
+            return mP99;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return "type=" + mViewType + (mKind == KIND_CREATE ? " create" : " bind")
+                    + " n=" + mCount + " p50=" + mP50 + "us p95=" + mP95 + "us p99=" + mP99
+                    + "us max=" + mMax + "us";
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package moe.div.mobase.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/4/25  11:05
+ * @desc 线程安全的数据源，任意线程都可以提交修改，修改先进入无锁队列，
+ * 每帧在主线程统一取出并合并成一次事务应用到适配器，适配器读取数据的主线程路径不需要加锁。
+ * 按唯一键的操作需要适配器先设置{@link MoBaseRecyclerAdapter#setKeyExtractor}
+ */
+public class ConcurrentDataSource<T> {
+
+    private static final int OP_ADD = 1;
+    private static final int OP_REMOVE = 2;
+    private static final int OP_UPDATE = 3;
+    private static final int OP_SET = 4;
+
+    /**
+     * 目标适配器，只在主线程访问
+     */
+    private final MoBaseRecyclerAdapter<T, ?> mAdapter;
+
+    /**
+     * 等待应用的修改
+     */
+    private final ConcurrentLinkedQueue<Op<T>> mPending = new ConcurrentLinkedQueue<Op<T>>();
+
+    /**
+     * 是否已经预约了下一帧
+     */
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 是否在等待适配器的差异结果，等待期间修改留在队列里。只在主线程访问
+     */
+    private boolean mWaitingForDiff;
+
+    public ConcurrentDataSource(MoBaseRecyclerAdapter<T, ?> adapter) {
+        mAdapter = adapter;
+    }
+
+    /**
+     * 在末尾追加一个数据，任意线程可调用
+     * @param t     数据
+     */
+    public void add(T t) {
+        enqueue(new Op<T>(OP_ADD, t, null, 0, null));
+    }
+
+    /**
+     * 在末尾追加一个集合的数据，任意线程可调用
+     * @param data  数据集合，会被复制一份
+     */
+    public void addAll(Collection<? extends T> data) {
+        enqueue(new Op<T>(OP_ADD, null, new ArrayList<T>(data), 0, null));
+    }
+
+    /**
+     * 通过唯一键删除一项，不存在时忽略，任意线程可调用
+     * @param key   唯一键
+     */
+    public void removeByKey(long key) {
+        enqueue(new Op<T>(OP_REMOVE, null, null, key, null));
+    }
+
+    /**
+     * 通过唯一键替换一项，不存在时忽略，任意线程可调用
+     * @param key       唯一键
+     * @param t         新数据
+     * @param payload   变化的内容，为null时全量刷新
+     */
+    public void updateByKey(long key, T t, Object payload) {
+        enqueue(new Op<T>(OP_UPDATE, t, null, key, payload));
+    }
+
+    /**
+     * 替换全部数据，任意线程可调用。
+     * 适配器开启了差异刷新时走后台差异计算，否则整体刷新
+     * @param data  新的数据集合，会被复制一份
+     */
+    public void setAll(Collection<? extends T> data) {
+        enqueue(new Op<T>(OP_SET, null, new ArrayList<T>(data), 0, null));
+    }
+
+    /**
+     * 清空数据，任意线程可调用
+     */
+    public void clear() {
+        enqueue(new Op<T>(OP_SET, null, new ArrayList<T>(), 0, null));
+    }
+
+    /**
+     * 放进队列并预约下一帧应用，同一帧内的多次修改只预约一次
+     * @param op    修改
+     */
+    private void enqueue(Op<T> op) {
+        mPending.offer(op);
+        if (mScheduled.compareAndSet(false, true)) {
+            // Choreographer只能在主线程获取
+            mMainHandler.post(mScheduleFrame);
+        }
+    }
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    };
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // 先清标记再取队列，取的过程中新来的修改会预约下一帧
+            mScheduled.set(false);
+            applyPending();
+        }
+    };
+
+    /**
+     * 差异结果应用之后，在同一个消息里重放等待期间排队的修改
+     */
+    private final Runnable mReplayPending = new Runnable() {
+        @Override
+        public void run() {
+            mWaitingForDiff = false;
+            applyPending();
+        }
+    };
+
+    /**
+     * 按顺序取出队列中的修改，合并成尽量少的事务应用到适配器。
+     * 适配器正在后台计算差异时不取，修改留在队列里，等结果应用之后再重放，
+     * 避免每帧都重新提交差异计算导致结果一直应用不上
+     */
+    private void applyPending() {
+        if (mWaitingForDiff) {
+            return;
+        }
+        DataTransaction<T> transaction = null;
+        // 当前事务里是否有插入，插入的数据还不在唯一键索引里
+        boolean hasInserts = false;
+        Op<T> op;
+        while (true) {
+            if (mAdapter.mPendingDiffList != null) {
+                mWaitingForDiff = true;
+                mAdapter.runAfterDiff(mReplayPending);
+                break;
+            }
+            op = mPending.poll();
+            if (op == null) {
+                break;
+            }
+            if (op.type == OP_SET) {
+                if (transaction != null) {
+                    transaction.commit();
+                    transaction = null;
+                    hasInserts = false;
+                }
+                // 连续的替换只有最后一次有效
+                Op<T> next;
+                while ((next = mPending.peek()) != null && next.type == OP_SET) {
+                    op = mPending.poll();
+                }
+                mAdapter.setData(op.list);
+                if (mAdapter.mDiffCallback == null) {
+                    mAdapter.notifyDataSetChanged();
+                }
+                // 开启了差异刷新时，下一轮循环会停下来等结果
+                continue;
+            }
+            if (op.type == OP_ADD) {
+                if (transaction == null) {
+                    transaction = mAdapter.beginTransaction();
+                }
+                if (op.list != null) {
+                    transaction.addAll(op.list);
+                } else {
+                    transaction.add(op.item);
+                }
+                hasInserts = true;
+                continue;
+            }
+            int position = mAdapter.getPositionByKey(op.key);
+            if (position == RecyclerView.NO_POSITION && hasInserts) {
+                // 可能是本帧刚插入的数据，先提交再查
+                transaction.commit();
+                transaction = null;
+                hasInserts = false;
+                position = mAdapter.getPositionByKey(op.key);
+            }
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            if (transaction == null) {
+                transaction = mAdapter.beginTransaction();
+            }
+            if (op.type == OP_REMOVE) {
+                transaction.remove(position);
+            } else {
+                transaction.update(position, op.item, op.payload);
+            }
+        }
+        if (transaction != null) {
+            transaction.commit();
+        }
+    }
+
+    /**
+     * 一次修改
+     */
+    private static final class Op<T> {
+
+        final int type;
+        final T item;
+        final List<T> list;
+        final long key;
+        final Object payload;
+
+        Op(int type, T item, List<T> list, long key, Object payload) {
+            this.type = type;
+            this.item = item;
+            this.list = list;
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+}
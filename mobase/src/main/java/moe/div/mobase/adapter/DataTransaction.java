@@ -0,0 +1,345 @@
+package moe.div.mobase.adapter;
+
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/4/12  10:45
+ * @desc 批量修改适配器数据，提交时一次性应用并把连续的范围合并成最少的通知。
+ * 所有索引都是开启事务时适配器的位置，提交前不要再通过其它方式修改数据。
+ * 修改较少时直接在原数据上修改，较多时重建一份新数据并替换适配器的数据引用。
+ * 唯一键索引只更新第一个修改位置之后的部分，在末尾追加时几乎不需要额外开销。
+ * 分组列表的位置包含头部，由适配器换算成数据索引
+ */
+public class DataTransaction<T> {
+
+    /**
+     * 所属适配器
+     */
+    private final MoBaseRecyclerAdapter<T, ?> mAdapter;
+
+    /**
+     * 开启事务时的位置数量，不含底部视图
+     */
+    private final int mBaseSize;
+
+    /**
+     * 开启事务时的数据修改次数
+     */
+    private final int mBaseModCount;
+
+    /**
+     * 插入的数据，键为插入到原数据的哪个索引之前
+     */
+    private final SparseArray<List<T>> mInserts = new SparseArray<List<T>>();
+
+    /**
+     * 删除的索引
+     */
+    private final SparseBooleanArray mRemoves = new SparseBooleanArray();
+
+    /**
+     * 替换的数据
+     */
+    private final SparseArray<T> mUpdates = new SparseArray<T>();
+
+    /**
+     * 替换时带的payload
+     */
+    private final SparseArray<Object> mPayloads = new SparseArray<Object>();
+
+    /**
+     * 是否已经提交
+     */
+    private boolean mCommitted = false;
+
+    DataTransaction(MoBaseRecyclerAdapter<T, ?> adapter) {
+        mAdapter = adapter;
+        mBaseSize = adapter.getTransactionSize();
+        mBaseModCount = adapter.mModCount;
+    }
+
+    /**
+     * 在末尾追加一个数据
+     * @param t     数据
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> add(T t) {
+        return add(mBaseSize, t);
+    }
+
+    /**
+     * 在原数据的某个索引之前插入一个数据
+     * @param position  原数据的索引，等于数据量时追加到末尾
+     * @param t         数据
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> add(int position, T t) {
+        checkInsertPosition(position);
+        List<T> list = mInserts.get(position);
+        if (list == null) {
+            list = new ArrayList<T>();
+            mInserts.put(position, list);
+        }
+        list.add(t);
+        return this;
+    }
+
+    /**
+     * 在末尾追加一个集合的数据
+     * @param data  数据集合
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> addAll(List<T> data) {
+        return addAll(mBaseSize, data);
+    }
+
+    /**
+     * 在原数据的某个索引之前插入一个集合的数据
+     * @param position  原数据的索引，等于数据量时追加到末尾
+     * @param data      数据集合
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> addAll(int position, List<T> data) {
+        checkInsertPosition(position);
+        List<T> list = mInserts.get(position);
+        if (list == null) {
+            list = new ArrayList<T>(data.size());
+            mInserts.put(position, list);
+        }
+        list.addAll(data);
+        return this;
+    }
+
+    /**
+     * 删除原数据中的一项
+     * @param position  原数据的索引
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> remove(int position) {
+        checkItemPosition(position);
+        mRemoves.put(position, true);
+        return this;
+    }
+
+    /**
+     * 通过唯一键删除一项，需要先设置唯一键提取器，不存在时忽略
+     * @param key   唯一键
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> removeByKey(long key) {
+        int position = mAdapter.getPositionByKey(key);
+        if (position != RecyclerView.NO_POSITION) {
+            remove(position);
+        }
+        return this;
+    }
+
+    /**
+     * 替换原数据中的一项
+     * @param position  原数据的索引
+     * @param t         新数据
+     * @param payload   变化的内容，为null时全量刷新
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> update(int position, T t, Object payload) {
+        checkItemPosition(position);
+        mUpdates.put(position, t);
+        mPayloads.put(position, payload);
+        return this;
+    }
+
+    /**
+     * 通过唯一键替换一项，需要先设置唯一键提取器，不存在时忽略
+     * @param key       唯一键
+     * @param t         新数据
+     * @param payload   变化的内容，为null时全量刷新
+     * @return  当前事务，可以链式调用
+     */
+    public DataTransaction<T> updateByKey(long key, T t, Object payload) {
+        int position = mAdapter.getPositionByKey(key);
+        if (position != RecyclerView.NO_POSITION) {
+            update(position, t, payload);
+        }
+        return this;
+    }
+
+    /**
+     * 提交事务，应用所有修改并分发合并后的通知，只能提交一次
+     */
+    public void commit() {
+        if (mCommitted) {
+            throw new IllegalStateException("Transaction already committed");
+        }
+        mCommitted = true;
+        if (mAdapter.mModCount != mBaseModCount) {
+            throw new ConcurrentModificationException("Adapter data changed while transaction was open");
+        }
+        int[] touched = collectTouchedPositions();
+        if (touched.length == 0) {
+            return;
+        }
+        int count = touched.length;
+        int[] dataIndices = new int[count];
+        int[] inserted = new int[count];
+        byte[] ops = new byte[count];
+        Object[] payloads = new Object[count];
+        for (int k = 0; k < count; k++) {
+            int position = touched[k];
+            dataIndices[k] = mAdapter.toTransactionDataIndex(position);
+            List<T> inserts = mInserts.get(position);
+            inserted[k] = inserts == null ? 0 : inserts.size();
+            if (mRemoves.get(position)) {
+                ops[k] = UpdateMerger.OP_REMOVE;
+            } else if (mUpdates.indexOfKey(position) >= 0) {
+                ops[k] = UpdateMerger.OP_CHANGE;
+                payloads[k] = mPayloads.get(position);
+            }
+        }
+        List<T> data = mAdapter.getData();
+        int dataSize = data.size();
+        // 第一个修改位置之前的索引不变，唯一键索引只需要更新后面的部分
+        boolean keysRemoved = mAdapter.removeKeysFrom(dataIndices[0]);
+        // 原地修改时每次插入、删除都要移动后面的数据，移动量超过整表重建时改为重建
+        long shiftCost = (long) (mInserts.size() + mRemoves.size()) * (dataSize - dataIndices[0]);
+        if (shiftCost <= dataSize) {
+            applyInPlace(data, touched, dataIndices, ops);
+        } else {
+            mAdapter.mList = rebuild(data, touched, dataIndices, ops);
+        }
+        mAdapter.onTransactionApplied(touched, inserted, ops);
+        mAdapter.mModCount++;
+        if (keysRemoved) {
+            mAdapter.putKeysFrom(dataIndices[0]);
+        }
+        BatchingListUpdateCallback callback =
+                new BatchingListUpdateCallback(new AdapterListUpdateCallback(mAdapter));
+        UpdateMerger.dispatchTransaction(touched, inserted, ops, payloads, callback);
+        callback.dispatchLastEvent();
+    }
+
+    /**
+     * 从后往前直接修改数据，前面的索引不受影响
+     * @param data          适配器数据
+     * @param touched       修改过的位置，升序
+     * @param dataIndices   每个位置对应的数据索引，不减
+     * @param ops           每个位置本身的修改
+     */
+    private void applyInPlace(List<T> data, int[] touched, int[] dataIndices, byte[] ops) {
+        for (int k = touched.length - 1; k >= 0; k--) {
+            int position = touched[k];
+            int index = dataIndices[k];
+            if (ops[k] == UpdateMerger.OP_REMOVE) {
+                data.remove(index);
+            } else if (ops[k] == UpdateMerger.OP_CHANGE) {
+                data.set(index, mUpdates.get(position));
+            }
+            List<T> inserts = mInserts.get(position);
+            if (inserts != null) {
+                data.addAll(index, inserts);
+            }
+        }
+    }
+
+    /**
+     * 按顺序拼出新的数据集合，之后直接替换适配器的数据引用，只复制一遍
+     * @param data          适配器数据
+     * @param touched       修改过的位置，升序
+     * @param dataIndices   每个位置对应的数据索引，不减
+     * @param ops           每个位置本身的修改
+     * @return  新的数据集合
+     */
+    private List<T> rebuild(List<T> data, int[] touched, int[] dataIndices, byte[] ops) {
+        List<T> result = new ArrayList<T>(data.size() + countInserts());
+        int from = 0;
+        for (int k = 0; k < touched.length; k++) {
+            int position = touched[k];
+            int index = dataIndices[k];
+            result.addAll(data.subList(from, index));
+            from = index;
+            List<T> inserts = mInserts.get(position);
+            if (inserts != null) {
+                result.addAll(inserts);
+            }
+            if (ops[k] == UpdateMerger.OP_REMOVE) {
+                from = index + 1;
+            } else if (ops[k] == UpdateMerger.OP_CHANGE) {
+                result.add(mUpdates.get(position));
+                from = index + 1;
+            }
+        }
+        result.addAll(data.subList(from, data.size()));
+        return result;
+    }
+
+    /**
+     * 汇总所有被修改过的原数据索引
+     * @return  升序不重复的索引
+     */
+    private int[] collectTouchedPositions() {
+        int[] positions = new int[mInserts.size() + mRemoves.size() + mUpdates.size()];
+        int count = 0;
+        for (int i = 0; i < mInserts.size(); i++) {
+            positions[count++] = mInserts.keyAt(i);
+        }
+        for (int i = 0; i < mRemoves.size(); i++) {
+            positions[count++] = mRemoves.keyAt(i);
+        }
+        for (int i = 0; i < mUpdates.size(); i++) {
+            positions[count++] = mUpdates.keyAt(i);
+        }
+        Arrays.sort(positions);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || positions[unique - 1] != positions[i]) {
+                positions[unique++] = positions[i];
+            }
+        }
+        return Arrays.copyOf(positions, unique);
+    }
+
+    private int countInserts() {
+        int count = 0;
+        for (int i = 0; i < mInserts.size(); i++) {
+            count += mInserts.valueAt(i).size();
+        }
+        return count;
+    }
+
+    /**
+     * 插入位置可以等于位置数量，表示追加到末尾
+     * @param position  位置
+     */
+    private void checkInsertPosition(int position) {
+        checkPosition(position, mBaseSize + 1);
+        // 不能插入的位置（比如分组列表的第一个头部之前）在换算时抛出异常
+        mAdapter.toTransactionDataIndex(position);
+    }
+
+    /**
+     * 删除、替换的位置必须是数据项
+     * @param position  位置
+     */
+    private void checkItemPosition(int position) {
+        checkPosition(position, mBaseSize);
+        if (!mAdapter.isTransactionItem(position)) {
+            throw new IllegalArgumentException("Position " + position + " is not a data item");
+        }
+    }
+
+    private static void checkPosition(int position, int bound) {
+        if (position < 0 || position >= bound) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds " + bound);
+        }
+    }
+}
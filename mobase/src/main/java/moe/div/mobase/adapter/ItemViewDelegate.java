@@ -0,0 +1,43 @@
+package moe.div.mobase.adapter;
+
+import android.view.ViewGroup;
+
+import java.util.List;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/4/18  16:02
+ * @desc 多类型列表中单个视图类型的创建与绑定，注册到{@link MoMultiTypeAdapter}使用
+ */
+public abstract class ItemViewDelegate<T, VH extends RecyclerView.ViewHolder> {
+
+    /**
+     * 创建ViewHolder，预创建时在后台线程调用，布局通过{@link MoBaseRecyclerAdapter#getLayoutInflater(ViewGroup)}加载，
+     * 不能读写parent和其它已经显示的视图
+     * @param parent    父容器
+     * @return  ViewHolder
+     */
+    public abstract VH onCreateViewHolder(ViewGroup parent);
+
+    /**
+     * 绑定数据内容
+     * @param holder        ViewHolder
+     * @param item          子项对象
+     * @param position      索引
+     */
+    public abstract void onBindViewHolder(VH holder, T item, int position);
+
+    /**
+     * 局部绑定数据内容，默认退回全量绑定
+     * @param holder        ViewHolder
+     * @param item          子项对象
+     * @param position      索引
+     * @param payloads      局部刷新的内容，不为空
+     */
+    public void onBindViewHolder(VH holder, T item, int position, List<Object> payloads) {
+        onBindViewHolder(holder, item, position);
+    }
+
+}
@@ -0,0 +1,168 @@
+package moe.div.mobase.adapter;
+
+import java.util.Arrays;
+
+/**
+ * @author 林墨
+ * @time 20/4/12  10:20
+ * @desc 唯一键到索引的映射表，开放寻址实现，查找不装箱不创建对象。
+ * 不依赖适配器，由调用方提取唯一键逐个放入，可以直接在JVM上压测。
+ * 删除时把后面同一条探测链上的项往前挪，不留删除标记，查找不会越来越慢
+ */
+final class KeyIndex {
+
+    /**
+     * 空槽位标记，索引存储时加一，0表示空
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * 唯一键
+     */
+    private long[] mKeys = new long[16];
+
+    /**
+     * 索引加一
+     */
+    private int[] mPositions = new int[16];
+
+    /**
+     * 取槽位用的掩码
+     */
+    private int mMask = 15;
+
+    /**
+     * 已放入的唯一键数量
+     */
+    private int mSize;
+
+    /**
+     * 清空映射并按数据量准备容量，之后按索引顺序逐个{@link #put(long, int)}
+     * @param size  数据量
+     */
+    void reset(int size) {
+        // 保持装载率不超过一半
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        if (capacity != mKeys.length) {
+            mKeys = new long[capacity];
+            mPositions = new int[capacity];
+            mMask = capacity - 1;
+        } else {
+            Arrays.fill(mPositions, EMPTY);
+        }
+        mSize = 0;
+    }
+
+    /**
+     * 放入一个唯一键，唯一键重复时保留先放入的索引
+     * @param key       唯一键
+     * @param position  索引
+     */
+    void put(long key, int position) {
+        int slot = slotOf(key);
+        while (mPositions[slot] != EMPTY && mKeys[slot] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        if (mPositions[slot] == EMPTY) {
+            mKeys[slot] = key;
+            mPositions[slot] = position + 1;
+            if (++mSize * 2 > mKeys.length) {
+                grow();
+            }
+        }
+    }
+
+    /**
+     * 删除一个唯一键，只有它当前对应的正是这个索引时才删除，
+     * 这样重复的唯一键不会误删先放入的那一项
+     * @param key       唯一键
+     * @param position  索引
+     */
+    void remove(long key, int position) {
+        int slot = slotOf(key);
+        while (mPositions[slot] != EMPTY) {
+            if (mKeys[slot] == key) {
+                if (mPositions[slot] == position + 1) {
+                    deleteSlot(slot);
+                }
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    /**
+     * 已放入的唯一键数量
+     * @return  数量
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * 查找唯一键对应的索引
+     * @param key   唯一键
+     * @return  索引，不存在时为-1
+     */
+    int get(long key) {
+        int slot = slotOf(key);
+        while (mPositions[slot] != EMPTY) {
+            if (mKeys[slot] == key) {
+                return mPositions[slot] - 1;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return -1;
+    }
+
+    /**
+     * 清空一个槽位，把后面探测链上不能越过空位找到的项挪进来
+     * @param slot  槽位
+     */
+    private void deleteSlot(int slot) {
+        mSize--;
+        int hole = slot;
+        int next = (hole + 1) & mMask;
+        while (mPositions[next] != EMPTY) {
+            int home = slotOf(mKeys[next]);
+            // 本来的槽位不在(hole, next]之间时，空出hole会让它查不到，挪过去
+            if (((next - home) & mMask) >= ((next - hole) & mMask)) {
+                mKeys[hole] = mKeys[next];
+                mPositions[hole] = mPositions[next];
+                hole = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        mPositions[hole] = EMPTY;
+    }
+
+    /**
+     * 容量翻倍并重新放入所有项
+     */
+    private void grow() {
+        long[] keys = mKeys;
+        int[] positions = mPositions;
+        int capacity = keys.length << 1;
+        mKeys = new long[capacity];
+        mPositions = new int[capacity];
+        mMask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (positions[i] != EMPTY) {
+                int slot = slotOf(keys[i]);
+                while (mPositions[slot] != EMPTY) {
+                    slot = (slot + 1) & mMask;
+                }
+                mKeys[slot] = keys[i];
+                mPositions[slot] = positions[i];
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+}
@@ -0,0 +1,57 @@
+package moe.div.mobase.adapter;
+
+import java.util.List;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * @author 林墨
+ * @time 20/7/11  17:40
+ * @desc 用ItemCallback比较两份数据集合的差异计算回调，适配器后台差异刷新使用，
+ * 不依赖Android，可以直接在JVM上压测
+ * @param <T>   数据类型
+ */
+final class ListDiffCallback<T> extends DiffUtil.Callback {
+
+    private final List<T> mOldList;
+
+    private final List<T> mNewList;
+
+    private final DiffUtil.ItemCallback<T> mCallback;
+
+    /**
+     * @param oldList   旧数据，计算期间不能修改
+     * @param newList   新数据，计算期间不能修改
+     * @param callback  单项的比较
+     */
+    ListDiffCallback(List<T> oldList, List<T> newList, DiffUtil.ItemCallback<T> callback) {
+        mOldList = oldList;
+        mNewList = newList;
+        mCallback = callback;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldList.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewList.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldPosition, int newPosition) {
+        return mCallback.areItemsTheSame(mOldList.get(oldPosition), mNewList.get(newPosition));
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldPosition, int newPosition) {
+        return mCallback.areContentsTheSame(mOldList.get(oldPosition), mNewList.get(newPosition));
+    }
+
+    @Override
+    public Object getChangePayload(int oldPosition, int newPosition) {
+        return mCallback.getChangePayload(mOldList.get(oldPosition), mNewList.get(newPosition));
+    }
+}
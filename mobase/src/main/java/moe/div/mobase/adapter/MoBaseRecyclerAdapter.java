@@ -1,12 +1,26 @@
 package moe.div.mobase.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.AdapterView;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+import moe.div.mobase.R;
 
 /**
  * @author 林墨
@@ -16,6 +30,8 @@ import androidx.recyclerview.widget.RecyclerView;
 public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder>
         extends RecyclerView.Adapter<VH>{
 
+    private static final String TAG = "MoBaseRecyclerAdapter";
+
     /**
      * 内容视图TAG
      */
@@ -26,6 +42,66 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      */
     public static final int TYPE_FOOTER_VIEW = 0x2002;
 
+    /**
+     * 开启稳定ID后底部视图使用的ID
+     */
+    public static final long FOOTER_ITEM_ID = Long.MIN_VALUE;
+
+    /**
+     * 底部状态：空闲，可以触发加载更多
+     */
+    public static final int FOOTER_STATE_IDLE = 0;
+
+    /**
+     * 底部状态：正在加载下一页
+     */
+    public static final int FOOTER_STATE_LOADING = 1;
+
+    /**
+     * 底部状态：加载失败，等待重试
+     */
+    public static final int FOOTER_STATE_ERROR = 2;
+
+    /**
+     * 底部状态：没有更多数据了
+     */
+    public static final int FOOTER_STATE_NO_MORE = 3;
+
+    /**
+     * 默认距离底部还剩多少项时开始加载下一页
+     */
+    private static final int DEFAULT_LOAD_MORE_THRESHOLD = 5;
+
+    /**
+     * 按滑动速度估算预加载距离时，向前预估的帧数
+     */
+    private static final int LOAD_MORE_LOOKAHEAD_FRAMES = 30;
+
+    /**
+     * 后台计算差异、过滤用的线程池，所有适配器共用一个线程
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * 后台预创建ViewHolder用的线程池，所有适配器共用一个线程
+     */
+    private static final Executor PREWARM_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * 预创建线程加载布局用的LayoutInflater，从列表的Context克隆，不和主线程共用
+     */
+    private static final ThreadLocal<LayoutInflater> PREWARM_INFLATER = new ThreadLocal<LayoutInflater>();
+
+    /**
+     * RecycledViewPool每种类型默认的容量
+     */
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    /**
+     * 主线程Handler，用于把后台计算、过滤结果切回主线程
+     */
+    static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
     /**
      * 数据集合
      */
@@ -41,6 +117,12 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      */
     protected AdapterView.OnItemLongClickListener mLongClickListener;
 
+    /**
+     * 所有子项共用的点击、长按分发器，点击时再去取ViewHolder当前的索引，
+     * 避免插入、移动之后拿到过期的position
+     */
+    private final ItemEventDispatcher mItemEventDispatcher = new ItemEventDispatcher();
+
     /**
      * 是否没有更多数据了
      */
@@ -57,7 +139,103 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
     protected boolean hasFooterView = false;
 
     /**
-     * 设置是否存在底部视图
+     * 底部视图当前状态
+     */
+    protected int mFooterState = FOOTER_STATE_IDLE;
+
+    /**
+     * 加载更多监听器
+     */
+    protected OnLoadMoreListener mLoadMoreListener;
+
+    /**
+     * 距离底部还剩多少项时开始加载下一页
+     */
+    protected int mLoadMoreThreshold = DEFAULT_LOAD_MORE_THRESHOLD;
+
+    /**
+     * 是否根据滑动速度放大预加载距离
+     */
+    protected boolean mLoadMoreByVelocity = false;
+
+    /**
+     * 当前绑定的RecyclerView
+     */
+    protected RecyclerView mRecyclerView;
+
+    /**
+     * 共享的ViewHolder缓存池，绑定到RecyclerView时设置进去
+     */
+    protected RecyclerView.RecycledViewPool mViewPool;
+
+    /**
+     * 监听滑动，接近底部时触发加载更多
+     */
+    private final LoadMoreScrollListener mLoadMoreScrollListener = new LoadMoreScrollListener();
+
+    /**
+     * 子项唯一键提取器，不为null时开启稳定ID
+     */
+    protected KeyExtractor<T> mKeyExtractor;
+
+    /**
+     * 后台过滤，不为null时处于过滤模式
+     */
+    private AdapterFilter<T> mAdapterFilter;
+
+    /**
+     * 有序模式，不为null时数据始终保持有序
+     */
+    private SortedMode<T> mSortedMode;
+
+    /**
+     * 创建、绑定耗时统计，为null时不统计
+     */
+    protected AdapterTimings mTimings;
+
+    /**
+     * 差异比较回调，不为null时setData()走后台差异计算
+     */
+    protected DiffUtil.ItemCallback<T> mDiffCallback;
+
+    /**
+     * 差异计算、过滤使用的线程池
+     */
+    private Executor mDiffExecutor = DIFF_EXECUTOR;
+
+    /**
+     * 最新一次差异计算的代号，旧代号的结果会被丢弃
+     */
+    private volatile int mDiffGeneration;
+
+    /**
+     * 正在后台计算差异的新数据，计算结果应用之前不为null
+     */
+    List<T> mPendingDiffList;
+
+    /**
+     * 等待差异结果应用之后再执行的操作，只在主线程访问
+     */
+    private List<Runnable> mAfterDiffActions;
+
+    /**
+     * 数据修改次数，用于判断差异计算、事务期间数据是否被改动过，以及唯一键索引是否过期。
+     * 子类直接修改mList之后需要自增
+     */
+    protected int mModCount;
+
+    /**
+     * 唯一键到索引的映射
+     */
+    private KeyIndex mKeyIndex;
+
+    /**
+     * 唯一键索引建立时的数据修改次数
+     */
+    private int mKeyIndexModCount;
+
+    /**
+     * 设置是否存在底部视图，底部视图占用数据项之后的一个位置
      * @param has       是否存在
      */
     public void setHasFooterView(boolean has){
@@ -83,7 +261,15 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      * @return  是否是底部
      */
     public boolean isFooterView(int position) {
-        return hasFooterView && mOpenLoadMore && position >= getItemCount() - 1;
+        return isFooterEnabled() && position >= getDataCount();
+    }
+
+    /**
+     * 当前是否显示底部视图，显示时占用{@link #getDataCount()}这个位置
+     * @return  是否显示
+     */
+    protected boolean isFooterEnabled() {
+        return hasFooterView && mOpenLoadMore;
     }
 
     /**
@@ -92,6 +278,7 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      */
     public void setFooterNoMoreData(boolean isNoMore){
         isNoMoreData = isNoMore;
+        setFooterState(isNoMore ? FOOTER_STATE_NO_MORE : FOOTER_STATE_IDLE);
     }
 
     /**
@@ -102,13 +289,486 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
         return isNoMoreData;
     }
 
+    /**
+     * 获取底部视图当前状态，子类绑定底部视图时根据它显示加载中、失败或没有更多
+     * @return  {@link #FOOTER_STATE_IDLE}、{@link #FOOTER_STATE_LOADING}、
+     *          {@link #FOOTER_STATE_ERROR}或{@link #FOOTER_STATE_NO_MORE}
+     */
+    public int getFooterState(){
+        return mFooterState;
+    }
+
+    /**
+     * 切换底部视图状态并刷新底部
+     * @param state     新状态
+     */
+    protected void setFooterState(int state){
+        if(mFooterState == state){
+            return;
+        }
+        mFooterState = state;
+        isNoMoreData = state == FOOTER_STATE_NO_MORE;
+        if(isFooterEnabled()){
+            notifyItemChanged(getDataCount());
+        }
+    }
+
+    /**
+     * 设置加载更多监听器，滑动到距离底部还剩{@link #setLoadMoreThreshold(int)}项时回调，
+     * 加载完成后调用{@link #loadMoreComplete(List)}、{@link #loadMoreFail()}或{@link #loadMoreEnd()}
+     * @param listener  加载更多监听器
+     */
+    public void setOnLoadMoreListener(OnLoadMoreListener listener){
+        mLoadMoreListener = listener;
+    }
+
+    /**
+     * 设置距离底部还剩多少项时开始加载下一页
+     * @param threshold     剩余项数
+     */
+    public void setLoadMoreThreshold(int threshold){
+        mLoadMoreThreshold = Math.max(0, threshold);
+    }
+
+    /**
+     * 设置是否根据滑动速度放大预加载距离，滑得越快越早开始加载
+     * @param byVelocity    是否开启
+     */
+    public void setLoadMoreByVelocity(boolean byVelocity){
+        mLoadMoreByVelocity = byVelocity;
+    }
+
+    /**
+     * 一页数据加载完成，追加到数据末尾、底部视图之前，并只通知插入的范围
+     * @param page  新一页的数据
+     */
+    public void loadMoreComplete(List<T> page){
+        if(page != null && !page.isEmpty()){
+            int before = getItemCount();
+            int start = isFooterEnabled() ? before - 1 : before;
+            addData(page);
+            // 子类追加时可能带出新的位置，比如分组列表的头部
+            notifyItemRangeInserted(start, getItemCount() - before);
+        }
+        setFooterState(FOOTER_STATE_IDLE);
+        // 一页数据不够铺满时继续检查
+        postCheckLoadMore();
+    }
+
+    /**
+     * 加载下一页失败，底部切换为失败状态，可调用{@link #retryLoadMore()}重试
+     */
+    public void loadMoreFail(){
+        setFooterState(FOOTER_STATE_ERROR);
+    }
+
+    /**
+     * 没有更多数据了，之后不再触发加载更多
+     */
+    public void loadMoreEnd(){
+        setFooterState(FOOTER_STATE_NO_MORE);
+    }
+
+    /**
+     * 加载失败后重试，一般在底部视图的点击事件里调用
+     */
+    public void retryLoadMore(){
+        if(mFooterState == FOOTER_STATE_ERROR){
+            setFooterState(FOOTER_STATE_IDLE);
+            requestLoadMore();
+        }
+    }
+
+    /**
+     * 获取数据项数量，不包含底部视图
+     * @return  数据项数量
+     */
+    public int getDataCount(){
+        return mList == null ? 0 : mList.size();
+    }
+
+    /**
+     * 设置共享的ViewHolder缓存池，多个列表使用同一个缓存池时可以互相复用视图，
+     * 比如{@link SharedViewPool#get(androidx.lifecycle.LifecycleOwner)}
+     * @param pool  缓存池
+     */
+    public void setSharedViewPool(RecyclerView.RecycledViewPool pool){
+        mViewPool = pool;
+        if(pool != null && mRecyclerView != null){
+            mRecyclerView.setRecycledViewPool(pool);
+        }
+    }
+
+    /**
+     * 在后台线程预先创建ViewHolder并放进RecyclerView的缓存池，首次布局时直接复用，
+     * 可以在{@code initData()}里调用。onCreateViewHolder()会在后台线程执行，需要遵守：
+     * 布局通过{@link #getLayoutInflater(ViewGroup)}加载，Activity共用的LayoutInflater不是线程安全的；
+     * parent只用来生成LayoutParams，不能读写它和其它已经显示的视图，也不能访问界面状态。
+     * 遇到只能在主线程创建的控件时剩下的数量交给RecyclerView按需创建。
+     * 开启{@link #setTimingsEnabled(boolean)}后可以用{@link AdapterTimings#getPhase(int)}对比开启前后首次布局和首次滑动的耗时
+     * @param recyclerView  使用该适配器的列表
+     * @param viewType      视图类型
+     * @param count         预创建数量，大于缓存池默认容量时会调大该类型的容量
+     */
+    public void prewarmViewHolders(RecyclerView recyclerView, int viewType, int count){
+        prewarmViewHolders(recyclerView, viewType, count, null);
+    }
+
+    /**
+     * 在后台线程预先创建ViewHolder并放进RecyclerView的缓存池
+     * @param recyclerView  使用该适配器的列表
+     * @param viewType      视图类型
+     * @param count         预创建数量，大于缓存池默认容量时会调大该类型的容量
+     * @param listener      完成监听器，在主线程回调，可用于统计耗时；列表已经离开窗口时放进缓存池的数量为0
+     */
+    public void prewarmViewHolders(RecyclerView recyclerView, final int viewType, final int count,
+                                   final OnPrewarmListener listener){
+        if(count <= 0){
+            return;
+        }
+        if(count > DEFAULT_MAX_RECYCLED_VIEWS){
+            recyclerView.getRecycledViewPool().setMaxRecycledViews(viewType, count);
+        }
+        // 后台任务只通过软连接持有列表，列表离开窗口后停止创建
+        final WeakReference<RecyclerView> reference = new WeakReference<RecyclerView>(recyclerView);
+        final PrewarmDetachWatcher watcher = new PrewarmDetachWatcher();
+        recyclerView.addOnAttachStateChangeListener(watcher);
+        PREWARM_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.uptimeMillis();
+                final List<VH> holders = new ArrayList<VH>(count);
+                RecyclerView list = reference.get();
+                if(list != null){
+                    PREWARM_INFLATER.set(LayoutInflater.from(list.getContext()).cloneInContext(list.getContext()));
+                }
+                try {
+                    for(int i = 0; i < count && !watcher.mDetached; i++){
+                        RecyclerView parent = reference.get();
+                        if(parent == null){
+                            break;
+                        }
+                        try {
+                            holders.add(createViewHolder(parent, viewType));
+                        } catch (RuntimeException e) {
+                            // 有的控件只能在主线程创建，剩下的交给RecyclerView按需创建
+                            Log.w(TAG, "Stop prewarming view type " + viewType
+                                    + " after " + holders.size() + " holders", e);
+                            break;
+                        }
+                    }
+                } finally {
+                    // 克隆的LayoutInflater持有Activity，用完就放掉
+                    PREWARM_INFLATER.remove();
+                }
+                final long cost = SystemClock.uptimeMillis() - start;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        RecyclerView parent = reference.get();
+                        if(parent != null){
+                            parent.removeOnAttachStateChangeListener(watcher);
+                        }
+                        if(parent == null || watcher.mDetached){
+                            // 列表已经离开窗口，创建好的视图直接丢弃
+                            holders.clear();
+                        }else {
+                            RecyclerView.RecycledViewPool pool = parent.getRecycledViewPool();
+                            for(VH holder : holders){
+                                pool.putRecycledView(holder);
+                            }
+                            if(mTimings != null){
+                                mTimings.onPrewarmed(holders.size());
+                            }
+                        }
+                        if(listener != null){
+                            listener.onPrewarmFinished(viewType, holders.size(), cost);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 获取创建ViewHolder时加载布局用的LayoutInflater，onCreateViewHolder()和{@link ItemViewDelegate}里都应该通过这里获取。
+     * 预创建时在后台线程返回克隆出来的实例，其它时候返回parent所在Context的LayoutInflater
+     * @param parent    onCreateViewHolder()收到的父容器
+     * @return  LayoutInflater
+     */
+    public static LayoutInflater getLayoutInflater(ViewGroup parent){
+        LayoutInflater inflater = PREWARM_INFLATER.get();
+        return inflater != null ? inflater : LayoutInflater.from(parent.getContext());
+    }
+
+    /**
+     * 记录列表是否已经离开窗口，预创建在后台线程读取
+     */
+    private static class PrewarmDetachWatcher implements View.OnAttachStateChangeListener {
+
+        volatile boolean mDetached;
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            // 预创建可能在列表第一次显示之前开始，这里不需要处理
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            mDetached = true;
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mRecyclerView = recyclerView;
+        if(mViewPool != null){
+            recyclerView.setRecycledViewPool(mViewPool);
+        }
+        recyclerView.addOnScrollListener(mLoadMoreScrollListener);
+        if(mTimings != null){
+            mTimings.beginPhase(AdapterTimings.PHASE_STARTUP);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mLoadMoreScrollListener);
+        if(mRecyclerView == recyclerView){
+            mRecyclerView = null;
+        }
+    }
+
+    /**
+     * 开始加载下一页，正在加载或者没有更多时忽略，保证同时只有一个请求
+     */
+    private void requestLoadMore(){
+        if(mLoadMoreListener == null || !mOpenLoadMore || mFooterState != FOOTER_STATE_IDLE){
+            return;
+        }
+        mFooterState = FOOTER_STATE_LOADING;
+        // 滑动回调可能处在布局过程中，延后到下一个消息里刷新底部和回调
+        if(mRecyclerView != null){
+            mRecyclerView.post(mDispatchLoadMore);
+        }else {
+            MAIN_HANDLER.post(mDispatchLoadMore);
+        }
+    }
+
+    /**
+     * 通知底部进入加载状态并回调加载更多
+     */
+    private final Runnable mDispatchLoadMore = new Runnable() {
+        @Override
+        public void run() {
+            if(mFooterState != FOOTER_STATE_LOADING || mLoadMoreListener == null){
+                return;
+            }
+            if(isFooterEnabled()){
+                notifyItemChanged(getDataCount());
+            }
+            mLoadMoreListener.onLoadMore();
+        }
+    };
+
+    /**
+     * 在下一个消息里按当前可见位置检查一次是否需要加载更多
+     */
+    private void postCheckLoadMore(){
+        if(mRecyclerView != null && mLoadMoreListener != null){
+            mRecyclerView.post(mCheckLoadMore);
+        }
+    }
+
+    private final Runnable mCheckLoadMore = new Runnable() {
+        @Override
+        public void run() {
+            if(mRecyclerView != null){
+                mLoadMoreScrollListener.check(mRecyclerView, 0);
+            }
+        }
+    };
+
+    /**
+     * 加载更多滑动监听
+     */
+    private class LoadMoreScrollListener extends RecyclerView.OnScrollListener {
+
+        /**
+         * 瀑布流取最后可见位置用的数组，按列数复用
+         */
+        private int[] mLastPositions;
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            // 布局之后也会回调，dx、dy为0
+            if(mTimings != null && recyclerView.getChildCount() > 0){
+                mTimings.endPhase(AdapterTimings.PHASE_STARTUP);
+            }
+            if(mList instanceof PagedDataList){
+                updatePagedVisibleRange(recyclerView);
+            }
+            check(recyclerView, Math.max(Math.abs(dx), Math.abs(dy)));
+        }
+
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if(mTimings == null){
+                return;
+            }
+            if(newState == RecyclerView.SCROLL_STATE_DRAGGING){
+                mTimings.beginPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+            }else if(newState == RecyclerView.SCROLL_STATE_IDLE){
+                mTimings.endPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+            }
+        }
+
+        /**
+         * 把当前显示的子项范围告诉分页数据，这些项所在的页不会被淘汰
+         * @param recyclerView  列表
+         */
+        private void updatePagedVisibleRange(RecyclerView recyclerView) {
+            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            if(layoutManager == null){
+                return;
+            }
+            int dataCount = getDataCount();
+            int first = Integer.MAX_VALUE;
+            int last = RecyclerView.NO_POSITION;
+            for(int i = 0; i < layoutManager.getChildCount(); i++){
+                View child = layoutManager.getChildAt(i);
+                int position = child == null ? RecyclerView.NO_POSITION : layoutManager.getPosition(child);
+                if(position >= 0 && position < dataCount){
+                    first = Math.min(first, position);
+                    last = Math.max(last, position);
+                }
+            }
+            ((PagedDataList<T>) mList).setVisibleRange(first, last);
+        }
+
+        /**
+         * 检查最后可见位置是否已经进入预加载范围
+         * @param recyclerView  列表
+         * @param distance      本帧滑动距离
+         */
+        void check(RecyclerView recyclerView, int distance) {
+            if(mLoadMoreListener == null || !mOpenLoadMore || mFooterState != FOOTER_STATE_IDLE){
+                return;
+            }
+            int dataCount = getDataCount();
+            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            if(dataCount == 0 || layoutManager == null || layoutManager.getChildCount() == 0){
+                return;
+            }
+            int lastVisible = findLastVisiblePosition(layoutManager);
+            if(lastVisible == RecyclerView.NO_POSITION){
+                return;
+            }
+            int threshold = mLoadMoreThreshold;
+            if(mLoadMoreByVelocity && distance > 0){
+                // 按平均子项尺寸估算接下来若干帧会滑过多少项
+                int extent = layoutManager.canScrollHorizontally()
+                        ? layoutManager.getWidth() : layoutManager.getHeight();
+                int itemSize = Math.max(1, extent / layoutManager.getChildCount());
+                threshold += distance * LOAD_MORE_LOOKAHEAD_FRAMES / itemSize;
+            }
+            if(lastVisible >= dataCount - 1 - threshold){
+                requestLoadMore();
+            }
+        }
+
+        private int findLastVisiblePosition(RecyclerView.LayoutManager layoutManager) {
+            if(layoutManager instanceof LinearLayoutManager){
+                return ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            }
+            if(layoutManager instanceof StaggeredGridLayoutManager){
+                StaggeredGridLayoutManager staggered = (StaggeredGridLayoutManager) layoutManager;
+                if(mLastPositions == null || mLastPositions.length != staggered.getSpanCount()){
+                    mLastPositions = new int[staggered.getSpanCount()];
+                }
+                staggered.findLastVisibleItemPositions(mLastPositions);
+                int last = RecyclerView.NO_POSITION;
+                for(int position : mLastPositions){
+                    last = Math.max(last, position);
+                }
+                return last;
+            }
+            View lastChild = layoutManager.getChildAt(layoutManager.getChildCount() - 1);
+            return lastChild == null ? RecyclerView.NO_POSITION : layoutManager.getPosition(lastChild);
+        }
+    }
+
+    /**
+     * 过滤条件
+     * @param <T>   数据类型
+     */
+    public interface ItemFilter<T> {
+
+        /**
+         * 判断子项是否符合关键字，在后台线程调用
+         * @param item      子项对象
+         * @param query     关键字，不为空
+         * @return  是否显示
+         */
+        boolean accept(T item, String query);
+    }
+
+    /**
+     * 预创建ViewHolder完成监听器
+     */
+    public interface OnPrewarmListener {
+
+        /**
+         * 预创建完成，ViewHolder已经放进缓存池
+         * @param viewType      视图类型
+         * @param created       实际创建的数量
+         * @param costMillis    后台创建耗时，单位毫秒
+         */
+        void onPrewarmFinished(int viewType, int created, long costMillis);
+    }
+
+    /**
+     * 子项唯一键提取器
+     * @param <T>   数据类型
+     */
+    public interface KeyExtractor<T> {
+
+        /**
+         * 获取子项的唯一键，会在绑定过程中频繁调用，不要在这里创建对象
+         * @param item  子项对象
+         * @return  唯一键
+         */
+        long getKey(T item);
+    }
+
+    /**
+     * 加载更多监听器
+     */
+    public interface OnLoadMoreListener {
+
+        /**
+         * 需要加载下一页时回调，同一时间只会有一次
+         */
+        void onLoadMore();
+    }
+
     /**
      * 设置数据
      * @param data  数据集合
      */
     public void setData(List<T> data){
+        mModCount++;
+        if(mDiffCallback != null){
+            submitDiff(data);
+            return;
+        }
         if(mList == null){
             mList = data;
+        }else if(mList instanceof PagedDataList){
+            // 分页数据不能修改，换成普通数据
+            mList = new ArrayList<T>(data);
         }else {
             // 清除原来的再添加，避免闪屏
             mList.clear();
@@ -116,11 +776,280 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
         }
     }
 
+    /**
+     * 开启差异刷新模式，之后的setData()会在后台计算新旧数据差异，
+     * 再回到主线程分发局部的插入、删除、移动和更新通知
+     * @param callback  子项与内容的比较回调，传null关闭该模式
+     */
+    public void setDiffCallback(DiffUtil.ItemCallback<T> callback){
+        if(callback != null){
+            checkNotPaged("Diff mode");
+        }
+        mDiffCallback = callback;
+        // 丢弃还没回来的计算结果
+        mDiffGeneration++;
+        finishPendingDiff();
+    }
+
+    /**
+     * 设置差异计算、过滤使用的线程池，默认所有适配器共用一个后台线程
+     * @param executor  线程池
+     */
+    public void setDiffExecutor(Executor executor){
+        mDiffExecutor = executor == null ? DIFF_EXECUTOR : executor;
+    }
+
+    /**
+     * 使用分页加载的超大列表数据，列表按完整数量显示，滑到哪里加载哪里，
+     * 内存中最多保留固定页数，当前显示的页不会被淘汰。没加载的项{@link #getItem(int)}返回null，需要在onBindData()里绑定占位视图。
+     * 这种数据不支持增删，也不能和稳定ID、差异刷新、有序模式、过滤模式一起使用，
+     * 这些功能需要读取每一项，会把所有页都加载进来
+     * @param data  分页数据
+     */
+    public void setPagedData(PagedDataList<T> data){
+        if(mKeyExtractor != null){
+            throw new IllegalStateException("Stable ids are not supported with PagedDataList");
+        }
+        if(mDiffCallback != null){
+            throw new IllegalStateException("Diff mode is not supported with PagedDataList");
+        }
+        if(mSortedMode != null || mAdapterFilter != null){
+            throw new IllegalStateException("Sorted and filter mode are not supported with PagedDataList");
+        }
+        data.attach(this);
+        mList = data;
+        mModCount++;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 开启有序模式，现有数据会先排一次序并整体刷新，之后通过{@link #addSorted(Object)}等方法修改数据，
+     * 插入只需二分查找加一次定向通知。有序模式下不要再用其它方法修改数据
+     * @param comparator    比较器，传null关闭有序模式
+     * @param keyExtractor  唯一键提取器，用于识别同一个子项，开启时不能为null
+     */
+    public void setSortedMode(Comparator<? super T> comparator, KeyExtractor<T> keyExtractor){
+        if(comparator != null){
+            checkNotPaged("Sorted mode");
+        }
+        mSortedMode = comparator == null ? null : new SortedMode<T>(this, comparator, keyExtractor);
+    }
+
+    /**
+     * 有序模式下插入一个数据，唯一键已存在时按更新处理
+     * @param t     数据
+     * @return  插入后的索引
+     */
+    public int addSorted(T t){
+        checkSortedMode();
+        return mSortedMode.add(t);
+    }
+
+    /**
+     * 有序模式下批量插入，连续的插入位置合并成一次范围通知
+     * @param data  数据集合
+     */
+    public void addSorted(List<T> data){
+        checkSortedMode();
+        mSortedMode.addAll(data);
+    }
+
+    /**
+     * 有序模式下更新一个数据，排序位置变化时通知移动，唯一键不存在时按插入处理。
+     * 请传入新的对象，直接修改原对象的排序字段再传入时需要整表扫描才能找到原位置
+     * @param t         新数据
+     * @param payload   变化的内容，为null时全量刷新
+     * @return  更新后的索引
+     */
+    public int updateSorted(T t, Object payload){
+        checkSortedMode();
+        return mSortedMode.update(t, payload);
+    }
+
+    /**
+     * 有序模式下通过唯一键删除一个数据
+     * @param key   唯一键
+     * @return  是否存在并被删除
+     */
+    public boolean removeSorted(long key){
+        checkSortedMode();
+        return mSortedMode.remove(key);
+    }
+
+    /**
+     * 分页数据的未加载项为null，需要读取每一项的功能不能开启
+     * @param feature   功能名称
+     */
+    private void checkNotPaged(String feature){
+        if(mList instanceof PagedDataList){
+            throw new IllegalStateException(feature + " is not supported with PagedDataList");
+        }
+    }
+
+    private void checkSortedMode(){
+        if(mSortedMode == null){
+            throw new IllegalStateException("Call setSortedMode() first");
+        }
+    }
+
+    /**
+     * 开启过滤模式，原始数据通过{@link #setSourceData(List)}设置，
+     * 显示的数据由{@link #filter(CharSequence)}在后台过滤后局部刷新。
+     * 过滤条件需要满足：关键字变长时结果只会变少，这样才能只在上一次的结果里继续过滤
+     * @param filter    过滤条件，传null关闭过滤模式
+     */
+    public void setItemFilter(ItemFilter<T> filter){
+        if(filter != null){
+            checkNotPaged("Filter mode");
+        }
+        if(mAdapterFilter != null){
+            mAdapterFilter.cancel();
+        }
+        mAdapterFilter = filter == null ? null : new AdapterFilter<T>(this, filter);
+    }
+
+    /**
+     * 过滤模式下设置原始数据，会用当前关键字重新过滤
+     * @param data  原始数据
+     */
+    public void setSourceData(List<T> data){
+        checkFilterMode();
+        mAdapterFilter.setSource(data, mDiffExecutor);
+    }
+
+    /**
+     * 过滤模式下获取原始数据
+     * @return  原始数据，不要直接修改
+     */
+    public List<T> getSourceData(){
+        checkFilterMode();
+        return mAdapterFilter.getSource();
+    }
+
+    /**
+     * 按关键字在后台过滤，新的关键字会取消还没完成的上一次过滤
+     * @param query     关键字，为空时显示全部原始数据
+     */
+    public void filter(CharSequence query){
+        checkFilterMode();
+        mAdapterFilter.filter(query, mDiffExecutor);
+    }
+
+    /**
+     * 获取最近一次过滤的关键字
+     * @return  关键字
+     */
+    public String getFilterQuery(){
+        return mAdapterFilter == null ? "" : mAdapterFilter.getQuery();
+    }
+
+    private void checkFilterMode(){
+        if(mAdapterFilter == null){
+            throw new IllegalStateException("Call setItemFilter() before filtering");
+        }
+    }
+
+    /**
+     * 提交新数据，在后台计算差异，只有最新一次提交的结果会被应用
+     * @param data  新的数据集合
+     */
+    private void submitDiff(List<T> data){
+        submitDiffList(data == null ? new ArrayList<T>() : new ArrayList<T>(data));
+    }
+
+    /**
+     * 对已经复制好的新数据计算差异，重新计算时沿用同一个集合
+     * @param newList   新的数据集合，之后不再修改
+     */
+    private void submitDiffList(final List<T> newList){
+        final int generation = ++mDiffGeneration;
+        final List<T> oldList = getData();
+        if(oldList.isEmpty() || newList.isEmpty()){
+            // 一方为空时不需要计算，直接整段通知
+            int oldSize = oldList.size();
+            mList = newList;
+            mModCount++;
+            if(oldSize > 0){
+                notifyItemRangeRemoved(0, oldSize);
+            }
+            if(!newList.isEmpty()){
+                notifyItemRangeInserted(0, newList.size());
+            }
+            finishPendingDiff();
+            return;
+        }
+        final List<T> oldSnapshot = new ArrayList<T>(oldList);
+        final DiffUtil.ItemCallback<T> callback = mDiffCallback;
+        final int modCount = mModCount;
+        mPendingDiffList = newList;
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(generation != mDiffGeneration){
+                    // 已经有更新的数据了
+                    return;
+                }
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ListDiffCallback<T>(oldSnapshot, newList, callback));
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(generation != mDiffGeneration){
+                            return;
+                        }
+                        if(modCount != mModCount){
+                            // 计算期间数据被改动过，结果已经对不上，基于当前数据重新计算
+                            submitDiffList(newList);
+                            return;
+                        }
+                        mList = newList;
+                        mModCount++;
+                        result.dispatchUpdatesTo(MoBaseRecyclerAdapter.this);
+                        finishPendingDiff();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 在正在计算的差异结果应用之后执行，没有正在计算的差异时立即执行。
+     * 差异计算期间的修改应该通过它排到结果之后，直接修改数据会让差异重新计算
+     * @param action    要执行的操作，在主线程执行
+     */
+    void runAfterDiff(Runnable action){
+        if(mPendingDiffList == null){
+            action.run();
+            return;
+        }
+        if(mAfterDiffActions == null){
+            mAfterDiffActions = new ArrayList<Runnable>();
+        }
+        mAfterDiffActions.add(action);
+    }
+
+    /**
+     * 差异结果已经应用或者被丢弃，执行等待中的操作
+     */
+    private void finishPendingDiff(){
+        mPendingDiffList = null;
+        if(mAfterDiffActions == null){
+            return;
+        }
+        List<Runnable> actions = mAfterDiffActions;
+        mAfterDiffActions = null;
+        for(int i = 0; i < actions.size(); i++){
+            // 前面的操作可能又提交了差异计算，后面的接着排队
+            runAfterDiff(actions.get(i));
+        }
+    }
+
     /**
      * 追加一个集合的数据
      * @param data  数据集合
      */
     public void addData(List<T> data){
+        mModCount++;
         if(mList == null){
             mList = new ArrayList<T>();
         }
@@ -132,6 +1061,7 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      * @param data  数据
      */
     public void addData(T data){
+        mModCount++;
         if(mList == null){
             mList = new ArrayList<T>();
         }
@@ -155,6 +1085,7 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      * @param position  索引
      */
     public void deleteItem(int position){
+        mModCount++;
         mList.remove(position);
     }
 
@@ -163,10 +1094,168 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      * @param t 对象
      */
     public void deleteItem(T t){
+        mModCount++;
         mList.remove(t);
     }
 
 
+    /**
+     * 替换一个子项并全量刷新该项
+     * @param position  索引
+     * @param t         新对象
+     */
+    public void updateItem(int position, T t){
+        updateItem(position, t, null);
+    }
+
+    /**
+     * 替换一个子项，并带上payload通知刷新，
+     * 之后只会回调{@link #onBindData(RecyclerView.ViewHolder, int, List)}做局部绑定
+     * @param position  索引
+     * @param t         新对象
+     * @param payload   变化的内容，为null时全量刷新
+     */
+    public void updateItem(int position, T t, Object payload){
+        mModCount++;
+        mList.set(position, t);
+        notifyItemChanged(position, payload);
+    }
+
+    /**
+     * 设置子项唯一键提取器并开启稳定ID，
+     * 需要在setAdapter()之前调用，唯一键在整个列表里不能重复
+     * @param extractor     唯一键提取器，传null关闭稳定ID
+     */
+    public void setKeyExtractor(KeyExtractor<T> extractor){
+        if(extractor != null){
+            checkNotPaged("Stable ids");
+        }
+        mKeyExtractor = extractor;
+        mKeyIndex = null;
+        setHasStableIds(extractor != null);
+    }
+
+    /**
+     * 覆写的获取子项ID方法，设置了唯一键提取器时返回子项的唯一键
+     * @param position      索引
+     * @return  子项ID
+     */
+    @Override
+    public long getItemId(int position) {
+        if(mKeyExtractor == null){
+            return super.getItemId(position);
+        }
+        if(isFooterView(position)){
+            return FOOTER_ITEM_ID;
+        }
+        if(position < 0 || position >= getDataCount()){
+            return RecyclerView.NO_ID;
+        }
+        return mKeyExtractor.getKey(mList.get(position));
+    }
+
+    /**
+     * 通过唯一键查找子项索引，需要先设置唯一键提取器
+     * @param key   唯一键
+     * @return  索引，不存在时为{@link RecyclerView#NO_POSITION}
+     */
+    public int getPositionByKey(long key){
+        if(mKeyExtractor == null || mList == null){
+            return RecyclerView.NO_POSITION;
+        }
+        // 数据没变时直接查表，变了之后第一次查找时重建
+        if(mKeyIndex == null || mKeyIndexModCount != mModCount){
+            if(mKeyIndex == null){
+                mKeyIndex = new KeyIndex();
+            }
+            int size = mList.size();
+            mKeyIndex.reset(size);
+            for(int i = 0; i < size; i++){
+                mKeyIndex.put(mKeyExtractor.getKey(mList.get(i)), i);
+            }
+            mKeyIndexModCount = mModCount;
+        }
+        int position = mKeyIndex.get(key);
+        return position < 0 ? RecyclerView.NO_POSITION : position;
+    }
+
+    /**
+     * 唯一键索引是最新的时候，移除从某个数据索引开始的所有唯一键，事务修改数据之前调用
+     * @param dataIndex     第一个受影响的数据索引
+     * @return  是否移除了，false表示索引已经过期，下次查找时整表重建
+     */
+    boolean removeKeysFrom(int dataIndex){
+        if(mKeyIndex == null || mKeyExtractor == null || mKeyIndexModCount != mModCount){
+            return false;
+        }
+        for(int i = dataIndex; i < mList.size(); i++){
+            mKeyIndex.remove(mKeyExtractor.getKey(mList.get(i)), i);
+        }
+        return true;
+    }
+
+    /**
+     * 事务修改数据之后放回从某个数据索引开始的唯一键，前面的部分不受影响，不用重建
+     * @param dataIndex     第一个受影响的数据索引
+     */
+    void putKeysFrom(int dataIndex){
+        for(int i = dataIndex; i < mList.size(); i++){
+            mKeyIndex.put(mKeyExtractor.getKey(mList.get(i)), i);
+        }
+        mKeyIndexModCount = mModCount;
+    }
+
+    /**
+     * 开启一个数据修改事务，可以批量插入、删除、替换，提交时合并通知，
+     * 适合短时间内大量零碎修改的场景。分页数据不支持；
+     * 差异刷新模式下后台正在计算差异时不能开启，结果应用时会丢掉事务的修改
+     * @return  数据修改事务
+     */
+    public DataTransaction<T> beginTransaction(){
+        if(mList instanceof PagedDataList){
+            throw new IllegalStateException("PagedDataList does not support transactions");
+        }
+        if(mPendingDiffList != null){
+            throw new IllegalStateException("Cannot begin a transaction while a diff is pending");
+        }
+        return new DataTransaction<T>(this);
+    }
+
+    /**
+     * 事务使用的位置数量，不含底部视图
+     * @return  位置数量
+     */
+    int getTransactionSize(){
+        return getDataCount();
+    }
+
+    /**
+     * 把事务里的位置换算成数据集合中的索引，插入时是插在哪个数据之前，不能插入的位置抛出异常
+     * @param position  位置，可以等于{@link #getTransactionSize()}
+     * @return  数据索引
+     */
+    int toTransactionDataIndex(int position){
+        return position;
+    }
+
+    /**
+     * 事务里的位置是否是可以删除、替换的数据项
+     * @param position  位置
+     * @return  是否是数据项
+     */
+    boolean isTransactionItem(int position){
+        return true;
+    }
+
+    /**
+     * 事务已经修改了数据、还没有分发通知时调用，子类在这里同步自己的索引
+     * @param touched   修改过的位置，升序
+     * @param inserted  每个位置之前插入的数量
+     * @param ops       每个位置本身的修改，见{@link UpdateMerger}
+     */
+    void onTransactionApplied(int[] touched, int[] inserted, byte[] ops){
+    }
+
     /**
      * 获取一个子项对象
      * @param position  索引
@@ -198,37 +1287,135 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      * @param position      索引
      */
     @Override
-    public void onBindViewHolder(final VH holder, final int position) {
-        // 点击事件
-        holder.itemView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (mClickListener == null) {
-                    return;
-                }
-                if(isFooterView(position)){
-                    // 不处理尾部布局的点击事件
-                    return;
-                }
-                mClickListener.onItemClick(null, holder.itemView, position, getItemId(position));
+    public void onBindViewHolder(VH holder, int position) {
+        bind(holder, position, null);
+    }
+
+    /**
+     * 覆写带payload的onBindViewHolder()方法，有payload时只做局部绑定，
+     * 没有payload时交给{@link #onBindViewHolder(RecyclerView.ViewHolder, int)}，子类覆写的两个参数版本照常生效
+     * @param holder        ViewHolder
+     * @param position      索引
+     * @param payloads      局部刷新的内容，为空时全量绑定
+     */
+    @Override
+    public void onBindViewHolder(VH holder, int position, List<Object> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            bind(holder, position, payloads);
+        }
+    }
+
+    /**
+     * 挂上监听器并绑定数据，开启统计时记录绑定耗时
+     * @param holder        ViewHolder
+     * @param position      索引
+     * @param payloads      局部刷新的内容，为null时全量绑定
+     */
+    private void bind(VH holder, int position, List<Object> payloads) {
+        attachItemListeners(holder);
+        if (mTimings == null) {
+            dispatchBindData(holder, position, payloads);
+            return;
+        }
+        int viewType = holder.getItemViewType();
+        long start = mTimings.begin(AdapterTimings.KIND_BIND, viewType);
+        try {
+            dispatchBindData(holder, position, payloads);
+        } finally {
+            mTimings.end(AdapterTimings.KIND_BIND, viewType, start);
+        }
+    }
+
+    private void dispatchBindData(VH holder, int position, List<Object> payloads) {
+        if (payloads == null) {
+            onBindData(holder, position);
+        } else {
+            onBindData(holder, position, payloads);
+        }
+    }
+
+    /**
+     * 开启或关闭按视图类型的创建、绑定耗时统计，关闭时绑定路径只多一次判空。
+     * 绑定耗时自动统计；创建耗时由{@link MoMultiTypeAdapter}自动统计，
+     * 直接继承本类时可以在onCreateViewHolder()里用{@link #getTimings()}的begin()/end()包起来
+     * @param enabled   是否开启
+     */
+    public void setTimingsEnabled(boolean enabled){
+        if(!enabled){
+            mTimings = null;
+        }else if(mTimings == null){
+            mTimings = new AdapterTimings();
+        }
+    }
+
+    /**
+     * 获取耗时统计
+     * @return  耗时统计，没开启时为null
+     */
+    public AdapterTimings getTimings(){
+        return mTimings;
+    }
+
+    /**
+     * 给ViewHolder挂上点击、长按监听器，每个ViewHolder只挂一次，之后的绑定不再产生对象。
+     * 共享缓存池里别的适配器创建的ViewHolder挂的是别人的分发器，第一次绑定到这里时换成自己的
+     * @param holder        ViewHolder
+     */
+    private void attachItemListeners(VH holder) {
+        if (holder.itemView.getTag(R.id.mo_base_view_holder) != holder
+                || holder.itemView.getTag(R.id.mo_base_item_dispatcher) != mItemEventDispatcher) {
+            holder.itemView.setTag(R.id.mo_base_view_holder, holder);
+            holder.itemView.setTag(R.id.mo_base_item_dispatcher, mItemEventDispatcher);
+            holder.itemView.setOnClickListener(mItemEventDispatcher);
+            holder.itemView.setOnLongClickListener(mItemEventDispatcher);
+        }
+    }
+
+    /**
+     * 点击、长按事件分发器
+     */
+    private class ItemEventDispatcher implements View.OnClickListener, View.OnLongClickListener {
+
+        @Override
+        public void onClick(View v) {
+            if (mClickListener == null) {
+                return;
             }
-        });
-        // 长按事件
-        holder.itemView.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                if(isFooterView(position)){
-                    // 不处理尾部布局的点击事件
-                    return false;
-                }
-                return mLongClickListener != null &&
-                        mLongClickListener.onItemLongClick(null,
-                                holder.itemView,
-                                position,
-                                getItemId(position));
+            int position = getHolderPosition(v);
+            if (position == RecyclerView.NO_POSITION || isFooterView(position)) {
+                // 不处理尾部布局的点击事件
+                return;
             }
-        });
-        onBindData(holder, position);
+            mClickListener.onItemClick(null, v, position, getItemId(position));
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            if (mLongClickListener == null) {
+                return false;
+            }
+            int position = getHolderPosition(v);
+            if (position == RecyclerView.NO_POSITION || isFooterView(position)) {
+                // 不处理尾部布局的点击事件
+                return false;
+            }
+            return mLongClickListener.onItemLongClick(null, v, position, getItemId(position));
+        }
+
+        /**
+         * 获取子项视图对应ViewHolder的当前索引
+         * @param v     子项视图
+         * @return  索引，已被移除时为{@link RecyclerView#NO_POSITION}
+         */
+        private int getHolderPosition(View v) {
+            Object holder = v.getTag(R.id.mo_base_view_holder);
+            if (!(holder instanceof RecyclerView.ViewHolder)) {
+                return RecyclerView.NO_POSITION;
+            }
+            return ((RecyclerView.ViewHolder) holder).getBindingAdapterPosition();
+        }
     }
 
 
@@ -239,10 +1426,24 @@ public abstract class MoBaseRecyclerAdapter<T,VH extends RecyclerView.ViewHolder
      */
     protected abstract void onBindData(VH holder, int position);
 
+    /**
+     * 局部绑定数据内容，只刷新payload对应的部分，默认退回全量绑定
+     * @param holder        ViewHolder
+     * @param position      索引
+     * @param payloads      {@link #updateItem(int, Object, Object)}等传入的payload，不为空
+     */
+    protected void onBindData(VH holder, int position, List<Object> payloads) {
+        onBindData(holder, position);
+    }
 
+
+    /**
+     * 数据项数量加上底部视图
+     * @return  子项数量
+     */
     @Override
     public int getItemCount() {
-        return mList == null ? 0 : mList.size() ;
+        return isFooterEnabled() ? getDataCount() + 1 : getDataCount();
     }
 
 }
@@ -0,0 +1,234 @@
+package moe.div.mobase.adapter;
+
+import android.os.Looper;
+import android.util.SparseArray;
+import android.view.ViewGroup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/4/18  16:10
+ * @desc 多类型列表适配器，按子项的类查找视图类型，再交给注册的{@link ItemViewDelegate}创建和绑定。
+ * 为null的子项（比如分页数据还没加载的项）使用占位视图类型，交给{@link #setPlaceholderDelegate}设置的代理
+ */
+public class MoMultiTypeAdapter<T> extends MoBaseRecyclerAdapter<T, RecyclerView.ViewHolder> {
+
+    /**
+     * 占位视图TAG，子项为null时使用
+     */
+    public static final int TYPE_PLACEHOLDER_VIEW = 0x2004;
+
+    /**
+     * 视图类型对应的代理
+     */
+    private final SparseArray<ItemViewDelegate<Object, RecyclerView.ViewHolder>> mDelegates =
+            new SparseArray<ItemViewDelegate<Object, RecyclerView.ViewHolder>>();
+
+    /**
+     * 注册时的类对应的视图类型
+     */
+    private final Map<Class<?>, Integer> mRegisteredTypes = new HashMap<Class<?>, Integer>();
+
+    /**
+     * 子项实际的类对应的视图类型，包含通过父类、接口找到的结果
+     */
+    private final Map<Class<?>, Integer> mResolvedTypes = new HashMap<Class<?>, Integer>();
+
+    /**
+     * 底部视图代理，绑定时的数据为底部状态
+     */
+    private ItemViewDelegate<Object, RecyclerView.ViewHolder> mFooterDelegate;
+
+    /**
+     * 占位视图代理，绑定时的数据为null
+     */
+    private ItemViewDelegate<Object, RecyclerView.ViewHolder> mPlaceholderDelegate;
+
+    /**
+     * 注册一种子项类型，子类对象没有单独注册时也会使用父类的代理。
+     * 同一个类再次注册时替换原来的视图类型和代理
+     * @param clazz         子项的类
+     * @param viewType      视图类型，需要共享缓存池时在各个列表里保持一致
+     * @param delegate      代理
+     * @return  当前适配器，可以链式调用
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends T, VH extends RecyclerView.ViewHolder> MoMultiTypeAdapter<T> register(
+            Class<E> clazz, int viewType, ItemViewDelegate<E, VH> delegate) {
+        if (viewType == TYPE_FOOTER_VIEW || viewType == TYPE_PLACEHOLDER_VIEW) {
+            throw new IllegalArgumentException("View type " + viewType + " is reserved");
+        }
+        ItemViewDelegate<Object, RecyclerView.ViewHolder> old = mDelegates.get(viewType);
+        if (old != null && old != delegate && isUsedByOtherClass(viewType, clazz)) {
+            throw new IllegalArgumentException("View type " + viewType + " already registered");
+        }
+        Integer oldType = mRegisteredTypes.put(clazz, viewType);
+        if (oldType != null && oldType != viewType && !mRegisteredTypes.containsValue(oldType)) {
+            // 原来的视图类型没有其它类使用了，一起移除
+            mDelegates.remove(oldType);
+        }
+        mDelegates.put(viewType, (ItemViewDelegate<Object, RecyclerView.ViewHolder>) delegate);
+        mResolvedTypes.clear();
+        return this;
+    }
+
+    /**
+     * 判断视图类型是否已经被其它类注册
+     * @param viewType  视图类型
+     * @param clazz     正在注册的类
+     * @return  是否被其它类使用
+     */
+    private boolean isUsedByOtherClass(int viewType, Class<?> clazz) {
+        for (Map.Entry<Class<?>, Integer> entry : mRegisteredTypes.entrySet()) {
+            if (entry.getValue() == viewType && entry.getKey() != clazz) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 设置底部视图代理，绑定时的数据为{@link #getFooterState()}
+     * @param delegate  代理
+     * @return  当前适配器，可以链式调用
+     */
+    @SuppressWarnings("unchecked")
+    public <VH extends RecyclerView.ViewHolder> MoMultiTypeAdapter<T> setFooterDelegate(
+            ItemViewDelegate<Integer, VH> delegate) {
+        mFooterDelegate = (ItemViewDelegate<Object, RecyclerView.ViewHolder>) (ItemViewDelegate<?, ?>) delegate;
+        setHasFooterView(delegate != null);
+        return this;
+    }
+
+    /**
+     * 设置占位视图代理，子项为null时使用，绑定时的数据为null。
+     * 使用{@link #setPagedData(PagedDataList)}时需要设置，页加载完成后对应的项会换成实际的视图类型
+     * @param delegate  代理
+     * @return  当前适配器，可以链式调用
+     */
+    @SuppressWarnings("unchecked")
+    public <VH extends RecyclerView.ViewHolder> MoMultiTypeAdapter<T> setPlaceholderDelegate(
+            ItemViewDelegate<Void, VH> delegate) {
+        mPlaceholderDelegate = (ItemViewDelegate<Object, RecyclerView.ViewHolder>) (ItemViewDelegate<?, ?>) delegate;
+        return this;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (isFooterView(position)) {
+            return TYPE_FOOTER_VIEW;
+        }
+        T item = getItem(position);
+        if (item == null) {
+            if (mPlaceholderDelegate == null) {
+                throw new IllegalStateException("Null item at position " + position + " needs a placeholder delegate");
+            }
+            return TYPE_PLACEHOLDER_VIEW;
+        }
+        return getViewType(item.getClass());
+    }
+
+    /**
+     * 查找类对应的视图类型，结果会被缓存，之后同一个类是一次哈希查找
+     * @param clazz     子项的类
+     * @return  视图类型
+     */
+    private int getViewType(Class<?> clazz) {
+        Integer viewType = mResolvedTypes.get(clazz);
+        if (viewType == null) {
+            viewType = resolveViewType(clazz);
+            if (viewType == null) {
+                throw new IllegalStateException("No delegate registered for " + clazz.getName());
+            }
+            mResolvedTypes.put(clazz, viewType);
+        }
+        return viewType;
+    }
+
+    /**
+     * 沿着父类、接口查找注册过的视图类型
+     * @param clazz     子项的类
+     * @return  视图类型，没有注册时为null
+     */
+    private Integer resolveViewType(Class<?> clazz) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            Integer viewType = mRegisteredTypes.get(c);
+            if (viewType != null) {
+                return viewType;
+            }
+            for (Class<?> i : c.getInterfaces()) {
+                viewType = mRegisteredTypes.get(i);
+                if (viewType != null) {
+                    return viewType;
+                }
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        AdapterTimings timings = mTimings;
+        // 预创建时在后台线程调用，统计只在主线程进行
+        if (timings == null || Looper.myLooper() != Looper.getMainLooper()) {
+            return getDelegate(viewType).onCreateViewHolder(parent);
+        }
+        long start = timings.begin(AdapterTimings.KIND_CREATE, viewType);
+        try {
+            return getDelegate(viewType).onCreateViewHolder(parent);
+        } finally {
+            timings.end(AdapterTimings.KIND_CREATE, viewType, start);
+        }
+    }
+
+    @Override
+    protected void onBindData(RecyclerView.ViewHolder holder, int position) {
+        int viewType = holder.getItemViewType();
+        getDelegate(viewType).onBindViewHolder(holder, getBindItem(viewType, position), position);
+    }
+
+    @Override
+    protected void onBindData(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        int viewType = holder.getItemViewType();
+        getDelegate(viewType).onBindViewHolder(holder, getBindItem(viewType, position), position, payloads);
+    }
+
+    /**
+     * 设置了底部视图代理才显示底部视图
+     * @return  是否显示
+     */
+    @Override
+    protected boolean isFooterEnabled() {
+        return super.isFooterEnabled() && mFooterDelegate != null;
+    }
+
+    private Object getBindItem(int viewType, int position) {
+        if (viewType == TYPE_FOOTER_VIEW) {
+            return getFooterState();
+        }
+        return viewType == TYPE_PLACEHOLDER_VIEW ? null : getItem(position);
+    }
+
+    private ItemViewDelegate<Object, RecyclerView.ViewHolder> getDelegate(int viewType) {
+        ItemViewDelegate<Object, RecyclerView.ViewHolder> delegate;
+        if (viewType == TYPE_FOOTER_VIEW) {
+            delegate = mFooterDelegate;
+        } else if (viewType == TYPE_PLACEHOLDER_VIEW) {
+            delegate = mPlaceholderDelegate;
+        } else {
+            delegate = mDelegates.get(viewType);
+        }
+        if (delegate == null) {
+            throw new IllegalStateException("No delegate registered for view type " + viewType);
+        }
+        return delegate;
+    }
+
+}
@@ -0,0 +1,472 @@
+package moe.div.mobase.adapter;
+
+import android.widget.SectionIndexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/5/23  11:30
+ * @desc 分组列表适配器，头部不放进数据集合，由{@link SectionIndex}换算位置。
+ * mList按组的顺序保存所有子项，修改数据请使用{@link #setSections(List, List)}和{@link #setSectionItems(int, List)}。
+ * 继承来的修改方法同样可用：按索引修改和事务使用平铺索引，追加和加载更多放进最后一组，
+ * {@link #setData(List)}把数据放进一组。都会同步更新分组索引，没有分组时自动建一个头部为null的组。
+ * 实现了{@link SectionIndexer}，快速滚动条按字母跳转时可以直接使用
+ */
+public abstract class MoSectionedAdapter<H, T, VH extends RecyclerView.ViewHolder>
+        extends MoBaseRecyclerAdapter<T, VH> implements SectionIndexer {
+
+    /**
+     * 分组头部视图TAG
+     */
+    public static final int TYPE_SECTION_HEADER = 0x2003;
+
+    /**
+     * 各组头部数据
+     */
+    protected final List<H> mHeaders = new ArrayList<H>();
+
+    /**
+     * 位置索引
+     */
+    protected final SectionIndex mSectionIndex = new SectionIndex();
+
+    /**
+     * 设置全部分组
+     * @param headers   各组头部数据
+     * @param sections  各组子项，数量与头部一致
+     */
+    public void setSections(List<H> headers, List<List<T>> sections) {
+        replaceSections(headers, sections);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 替换全部分组，不通知
+     * @param headers   各组头部数据
+     * @param sections  各组子项，数量与头部一致
+     */
+    private void replaceSections(List<H> headers, List<List<T>> sections) {
+        if (headers.size() != sections.size()) {
+            throw new IllegalArgumentException("Headers and sections size mismatch");
+        }
+        mHeaders.clear();
+        mHeaders.addAll(headers);
+        int[] counts = new int[sections.size()];
+        List<T> items = getData();
+        items.clear();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = sections.get(i).size();
+            items.addAll(sections.get(i));
+        }
+        mSectionIndex.setItemCounts(counts);
+        mModCount++;
+    }
+
+    /**
+     * 替换一组的子项，只更新这一组的索引并局部通知
+     * @param section   组
+     * @param items     新的子项
+     */
+    public void setSectionItems(int section, List<T> items) {
+        int oldCount = mSectionIndex.getItemCount(section);
+        int newCount = items.size();
+        int headerPosition = mSectionIndex.getSectionStart(section);
+        // 该组第一个子项在数据集合中的索引，前面每组各有一个头部
+        int dataStart = headerPosition - section;
+        List<T> range = getData().subList(dataStart, dataStart + oldCount);
+        range.clear();
+        range.addAll(items);
+        mSectionIndex.setItemCount(section, newCount);
+        mModCount++;
+        int start = headerPosition + 1;
+        int common = Math.min(oldCount, newCount);
+        if (common > 0) {
+            notifyItemRangeChanged(start, common);
+        }
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(start + oldCount, newCount - oldCount);
+        } else if (newCount < oldCount) {
+            notifyItemRangeRemoved(start + newCount, oldCount - newCount);
+        }
+    }
+
+    /**
+     * 替换一组的头部数据
+     * @param section   组
+     * @param header    头部数据
+     */
+    public void setSectionHeader(int section, H header) {
+        mHeaders.set(section, header);
+        notifyItemChanged(mSectionIndex.getSectionStart(section));
+    }
+
+    /**
+     * 获取一组的头部数据
+     * @param section   组
+     * @return  头部数据
+     */
+    public H getSectionHeader(int section) {
+        return mHeaders.get(section);
+    }
+
+    /**
+     * 获取组数
+     * @return  组数
+     */
+    public int getSectionCount() {
+        return mSectionIndex.getSectionCount();
+    }
+
+    /**
+     * 滚动到一组的头部，O(log n)
+     * @param section   组
+     */
+    public void scrollToSection(int section) {
+        if (mRecyclerView == null) {
+            return;
+        }
+        int position = mSectionIndex.getSectionStart(section);
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, 0);
+        } else {
+            mRecyclerView.scrollToPosition(position);
+        }
+    }
+
+    /**
+     * 判断是不是分组头部
+     * @param position  索引
+     * @return  是否是头部
+     */
+    public boolean isSectionHeader(int position) {
+        return mSectionIndex.isHeader(position);
+    }
+
+    @Override
+    public Object[] getSections() {
+        return mHeaders.toArray();
+    }
+
+    @Override
+    public int getPositionForSection(int section) {
+        return mSectionIndex.getSectionStart(section);
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        return mSectionIndex.getSectionForPosition(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mSectionIndex.getTotalCount();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        int section = mSectionIndex.getSectionForPosition(position);
+        int offset = position - mSectionIndex.getSectionStart(section) - 1;
+        return offset < 0 ? TYPE_SECTION_HEADER : getSectionItemViewType(section, offset);
+    }
+
+    /**
+     * 获取组内子项的视图类型，需要多种子项类型时覆写
+     * @param section   组
+     * @param offset    组内偏移
+     * @return  视图类型
+     */
+    protected int getSectionItemViewType(int section, int offset) {
+        return TYPE_COMMON_VIEW;
+    }
+
+    @Override
+    public boolean isFooterView(int position) {
+        return false;
+    }
+
+    /**
+     * 分组列表没有底部视图
+     * @return  false
+     */
+    @Override
+    protected boolean isFooterEnabled() {
+        return false;
+    }
+
+    /**
+     * 不分组的数据全部放进一组，保留第一组的头部，没有分组时头部为null。
+     * 和父类一样不通知，分组列表不走差异刷新
+     * @param data  数据集合
+     */
+    @Override
+    public void setData(List<T> data) {
+        List<H> headers = new ArrayList<H>(1);
+        headers.add(mHeaders.isEmpty() ? null : mHeaders.get(0));
+        List<List<T>> sections = new ArrayList<List<T>>(1);
+        // 传入的可能就是当前的数据集合，先复制再清空
+        sections.add(new ArrayList<T>(data));
+        replaceSections(headers, sections);
+    }
+
+    /**
+     * 追加到最后一组的末尾，和父类一样不通知
+     * @param data  数据集合
+     */
+    @Override
+    public void addData(List<T> data) {
+        ensureSection(false);
+        getData().addAll(data);
+        appendToLastSection(data.size());
+    }
+
+    /**
+     * 追加到最后一组的末尾，和父类一样不通知
+     * @param data  数据
+     */
+    @Override
+    public void addData(T data) {
+        ensureSection(false);
+        getData().add(data);
+        appendToLastSection(1);
+    }
+
+    /**
+     * 开启数据修改事务，位置使用平铺索引，不能删除、替换头部。
+     * 插在某组头部的位置时放进上一组的末尾，追加时放进最后一组，不能插在第一组头部之前
+     * @return  数据修改事务
+     */
+    @Override
+    public DataTransaction<T> beginTransaction() {
+        ensureSection(true);
+        return super.beginTransaction();
+    }
+
+    @Override
+    int getTransactionSize() {
+        return mSectionIndex.getTotalCount();
+    }
+
+    @Override
+    int toTransactionDataIndex(int position) {
+        if (position == mSectionIndex.getTotalCount()) {
+            return getData().size();
+        }
+        int section = mSectionIndex.getSectionForPosition(position);
+        if (position == mSectionIndex.getSectionStart(section)) {
+            if (section == 0) {
+                throw new IllegalArgumentException("Cannot insert before the first section header");
+            }
+            // 头部之前就是上一组的末尾
+            return position - section;
+        }
+        return position - section - 1;
+    }
+
+    @Override
+    boolean isTransactionItem(int position) {
+        return !mSectionIndex.isHeader(position);
+    }
+
+    @Override
+    void onTransactionApplied(int[] touched, int[] inserted, byte[] ops) {
+        // 先按修改前的索引找到每个位置所在的组和插入的目标组，再统一更新
+        int total = mSectionIndex.getTotalCount();
+        int last = mSectionIndex.getSectionCount() - 1;
+        int[] sections = new int[touched.length];
+        int[] targets = new int[touched.length];
+        for (int k = 0; k < touched.length; k++) {
+            int position = touched[k];
+            if (position == total) {
+                sections[k] = last;
+                targets[k] = last;
+            } else {
+                int section = mSectionIndex.getSectionForPosition(position);
+                sections[k] = section;
+                // 插在头部之前就是插进上一组的末尾
+                targets[k] = position == mSectionIndex.getSectionStart(section) ? section - 1 : section;
+            }
+        }
+        for (int k = 0; k < touched.length; k++) {
+            if (inserted[k] > 0) {
+                int target = targets[k];
+                mSectionIndex.setItemCount(target, mSectionIndex.getItemCount(target) + inserted[k]);
+            }
+            if (ops[k] == UpdateMerger.OP_REMOVE) {
+                int section = sections[k];
+                mSectionIndex.setItemCount(section, mSectionIndex.getItemCount(section) - 1);
+            }
+        }
+    }
+
+    /**
+     * 没有分组时建一个头部为null的空组，数据只能放进已有的组
+     * @param notify    是否通知头部插入
+     */
+    private void ensureSection(boolean notify) {
+        if (mSectionIndex.getSectionCount() > 0) {
+            return;
+        }
+        mHeaders.add(null);
+        mSectionIndex.setItemCounts(new int[]{getData().size()});
+        mModCount++;
+        if (notify) {
+            notifyItemInserted(0);
+        }
+    }
+
+    /**
+     * 数据已经追加到数据集合末尾，更新最后一组的数量
+     * @param count     追加的数量
+     */
+    private void appendToLastSection(int count) {
+        int last = mSectionIndex.getSectionCount() - 1;
+        mSectionIndex.setItemCount(last, mSectionIndex.getItemCount(last) + count);
+        mModCount++;
+    }
+
+    /**
+     * 通过平铺索引删除一个子项，同步更新分组索引
+     * @param position  平铺索引，不能是头部
+     */
+    @Override
+    public void deleteItem(int position) {
+        int section = mSectionIndex.getSectionForPosition(position);
+        int dataIndex = toDataIndex(section, position);
+        mList.remove(dataIndex);
+        mSectionIndex.setItemCount(section, mSectionIndex.getItemCount(section) - 1);
+        mModCount++;
+        notifyItemRemoved(position);
+    }
+
+    /**
+     * 通过对象删除一个子项，同步更新分组索引
+     * @param t     对象
+     */
+    @Override
+    public void deleteItem(T t) {
+        int dataIndex = getData().indexOf(t);
+        if (dataIndex >= 0) {
+            deleteItem(toPosition(dataIndex));
+        }
+    }
+
+    /**
+     * 替换一个子项，并带上payload通知刷新
+     * @param position  平铺索引，不能是头部
+     * @param t         新对象
+     * @param payload   变化的内容，为null时全量刷新
+     */
+    @Override
+    public void updateItem(int position, T t, Object payload) {
+        int section = mSectionIndex.getSectionForPosition(position);
+        mList.set(toDataIndex(section, position), t);
+        mModCount++;
+        notifyItemChanged(position, payload);
+    }
+
+    /**
+     * 通过唯一键查找子项的平铺索引
+     * @param key   唯一键
+     * @return  平铺索引，不存在时为{@link RecyclerView#NO_POSITION}
+     */
+    @Override
+    public int getPositionByKey(long key) {
+        int dataIndex = super.getPositionByKey(key);
+        return dataIndex == RecyclerView.NO_POSITION ? RecyclerView.NO_POSITION : toPosition(dataIndex);
+    }
+
+    /**
+     * 平铺索引换算成数据集合中的索引
+     * @param section   所在的组
+     * @param position  平铺索引
+     * @return  数据索引
+     */
+    private int toDataIndex(int section, int position) {
+        if (position == mSectionIndex.getSectionStart(section)) {
+            throw new IllegalArgumentException("Position " + position + " is a section header");
+        }
+        return position - section - 1;
+    }
+
+    /**
+     * 数据集合中的索引换算成平铺索引，二分查找所在的组，O(log² n)
+     * @param dataIndex     数据索引
+     * @return  平铺索引
+     */
+    private int toPosition(int dataIndex) {
+        // 找最后一个第一项的数据索引不超过dataIndex的组，空组会被跳过
+        int low = 0;
+        int high = mSectionIndex.getSectionCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mSectionIndex.getSectionStart(mid) - mid <= dataIndex) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return dataIndex + low + 1;
+    }
+
+    /**
+     * 获取平铺索引对应的子项，头部返回null
+     * @param position  索引
+     * @return  子项对象
+     */
+    @Override
+    public T getItem(int position) {
+        int section = mSectionIndex.getSectionForPosition(position);
+        if (position == mSectionIndex.getSectionStart(section)) {
+            return null;
+        }
+        return mList.get(position - section - 1);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (mKeyExtractor == null) {
+            return RecyclerView.NO_ID;
+        }
+        int section = mSectionIndex.getSectionForPosition(position);
+        if (position == mSectionIndex.getSectionStart(section)) {
+            // 头部使用紧挨着底部ID的一段
+            return FOOTER_ITEM_ID + 1 + section;
+        }
+        return mKeyExtractor.getKey(mList.get(position - section - 1));
+    }
+
+    @Override
+    protected void onBindData(VH holder, int position) {
+        int section = mSectionIndex.getSectionForPosition(position);
+        int offset = position - mSectionIndex.getSectionStart(section) - 1;
+        if (offset < 0) {
+            onBindHeader(holder, section, mHeaders.get(section));
+        } else {
+            onBindItem(holder, section, offset, mList.get(position - section - 1));
+        }
+    }
+
+    /**
+     * 绑定分组头部
+     * @param holder    ViewHolder
+     * @param section   组
+     * @param header    头部数据
+     */
+    protected abstract void onBindHeader(VH holder, int section, H header);
+
+    /**
+     * 绑定组内子项
+     * @param holder    ViewHolder
+     * @param section   组
+     * @param offset    组内偏移
+     * @param item      子项对象
+     */
+    protected abstract void onBindItem(VH holder, int section, int offset, T item);
+
+}
@@ -0,0 +1,296 @@
+package moe.div.mobase.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * @author 林墨
+ * @time 20/5/16  14:30
+ * @desc 分页加载、内存有上限的超大列表数据，通过{@link MoBaseRecyclerAdapter#setPagedData(PagedDataList)}使用。
+ * size()返回完整数量，读取某一项时按需加载它所在的页，还没加载的项返回null，
+ * 子类在onBindData()里遇到null时绑定占位视图，多类型适配器通过{@link MoMultiTypeAdapter#setPlaceholderDelegate}绑定。
+ * 保留的页数超出上限时淘汰最久没有访问的页，可见范围内的页不会被淘汰，预加载的页在被访问之前排在最后。
+ * 只能在主线程访问，不支持增删；稳定ID、差异刷新、有序、过滤模式需要读取每一项，不能一起使用
+ */
+public class PagedDataList<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * 最少保留的页数，可见的页之外至少还能放下两侧预加载的页
+     */
+    private static final int MIN_PAGES = 3;
+
+    private final int mTotalCount;
+
+    private final int mPageSize;
+
+    /**
+     * 最多同时保留的页数，可见范围跨过的页数更多时暂时超出
+     */
+    private final int mMaxPages;
+
+    private final PageLoader<T> mLoader;
+
+    /**
+     * 已加载的页
+     */
+    private final SparseArray<Page<T>> mPages = new SparseArray<Page<T>>();
+
+    /**
+     * 访问计数，记录每页最后一次访问的先后
+     */
+    private long mAccessClock;
+
+    /**
+     * 正在加载的页，值表示是否被直接读取过，false表示只是预加载
+     */
+    private final SparseBooleanArray mLoading = new SparseBooleanArray();
+
+    /**
+     * 可见范围跨过的第一页和最后一页，这些页不会被淘汰，没有可见范围时为-1
+     */
+    private int mFirstVisiblePage = -1;
+    private int mLastVisiblePage = -1;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 页加载完成后需要通知的适配器
+     */
+    private MoBaseRecyclerAdapter<T, ?> mAdapter;
+
+    /**
+     * @param totalCount    数据总数
+     * @param pageSize      每页数量
+     * @param maxPages      最多同时保留的页数，不少于3页
+     * @param loader        分页加载器
+     */
+    public PagedDataList(int totalCount, int pageSize, int maxPages, PageLoader<T> loader) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        mTotalCount = totalCount;
+        mPageSize = pageSize;
+        mMaxPages = Math.max(MIN_PAGES, maxPages);
+        mLoader = loader;
+    }
+
+    void attach(MoBaseRecyclerAdapter<T, ?> adapter) {
+        mAdapter = adapter;
+    }
+
+    /**
+     * 获取一项，没加载时返回null并开始加载所在的页，接近页边界时顺带预加载相邻的页
+     * @param index     索引
+     * @return  数据，没加载时为null
+     */
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= mTotalCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds " + mTotalCount);
+        }
+        int page = index / mPageSize;
+        int offset = index % mPageSize;
+        if (offset < mPageSize / 4) {
+            ensurePage(page - 1, false);
+        } else if (offset >= mPageSize - mPageSize / 4) {
+            ensurePage(page + 1, false);
+        }
+        Page<T> loaded = mPages.get(page);
+        if (loaded == null) {
+            ensurePage(page, true);
+            return null;
+        }
+        loaded.lastAccess = ++mAccessClock;
+        return offset < loaded.items.size() ? loaded.items.get(offset) : null;
+    }
+
+    /**
+     * 判断一项是否已经加载，不会触发加载
+     * @param index     索引
+     * @return  是否已加载
+     */
+    public boolean isLoaded(int index) {
+        return mPages.get(index / mPageSize) != null;
+    }
+
+    @Override
+    public int size() {
+        return mTotalCount;
+    }
+
+    /**
+     * 获取当前保留在内存中的页数
+     * @return  页数
+     */
+    public int getLoadedPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * 设置当前可见的索引范围，范围内的页不会被淘汰。
+     * 适配器绑定到RecyclerView后会在每次滑动和布局之后自动设置
+     * @param first     第一个可见项的索引
+     * @param last      最后一个可见项的索引，小于first时清除可见范围
+     */
+    public void setVisibleRange(int first, int last) {
+        if (last < first || mTotalCount == 0) {
+            mFirstVisiblePage = -1;
+            mLastVisiblePage = -1;
+            return;
+        }
+        int firstPage = Math.max(0, first) / mPageSize;
+        int lastPage = Math.min(last, mTotalCount - 1) / mPageSize;
+        if (firstPage == mFirstVisiblePage && lastPage == mLastVisiblePage) {
+            return;
+        }
+        mFirstVisiblePage = firstPage;
+        mLastVisiblePage = lastPage;
+        // 之前因为可见而超出上限的页，离开可见范围后淘汰掉
+        while (mPages.size() > mMaxPages && evictLeastRecentlyUsed()) {
+            // 每次淘汰一页
+        }
+    }
+
+    private boolean isVisiblePage(int page) {
+        return page >= mFirstVisiblePage && page <= mLastVisiblePage;
+    }
+
+    /**
+     * 开始加载一页
+     * @param page      页码
+     * @param demand    是否被直接读取，false表示预加载
+     */
+    private void ensurePage(int page, boolean demand) {
+        if (page < 0 || page * mPageSize >= mTotalCount) {
+            return;
+        }
+        // 这里不更新访问时间，预加载不会影响淘汰
+        if (mPages.get(page) != null) {
+            return;
+        }
+        if (mLoading.indexOfKey(page) >= 0) {
+            if (demand) {
+                mLoading.put(page, true);
+            }
+            return;
+        }
+        mLoading.put(page, demand);
+        int start = page * mPageSize;
+        mLoader.loadPage(page, start, Math.min(mPageSize, mTotalCount - start), new PageCallback(page));
+    }
+
+    private void onPageLoaded(int page, List<T> items) {
+        boolean demand = mLoading.get(page);
+        mLoading.delete(page);
+        if (items == null) {
+            // 加载失败，下次访问时重试
+            return;
+        }
+        while (mPages.size() >= mMaxPages && evictLeastRecentlyUsed()) {
+            // 每次淘汰一页
+        }
+        Page<T> loaded = new Page<T>(items);
+        // 预加载的页还没被看到，访问时间记为最早，不能排到可见的页前面
+        loaded.lastAccess = demand || isVisiblePage(page) ? ++mAccessClock : 0;
+        mPages.put(page, loaded);
+        if (mAdapter != null && mAdapter.mList == this) {
+            int start = page * mPageSize;
+            mAdapter.notifyItemRangeChanged(start, Math.min(mPageSize, mTotalCount - start));
+        }
+    }
+
+    /**
+     * 淘汰可见范围外最久没有访问的页，页数上限很小，直接遍历
+     * @return  是否淘汰了一页，所有页都可见时为false
+     */
+    private boolean evictLeastRecentlyUsed() {
+        int eldest = -1;
+        long eldestAccess = Long.MAX_VALUE;
+        for (int i = 0; i < mPages.size(); i++) {
+            if (!isVisiblePage(mPages.keyAt(i)) && mPages.valueAt(i).lastAccess < eldestAccess) {
+                eldestAccess = mPages.valueAt(i).lastAccess;
+                eldest = i;
+            }
+        }
+        if (eldest < 0) {
+            return false;
+        }
+        mPages.removeAt(eldest);
+        return true;
+    }
+
+    /**
+     * 已加载的一页
+     */
+    private static final class Page<T> {
+
+        final List<T> items;
+
+        long lastAccess;
+
+        Page(List<T> items) {
+            this.items = items;
+        }
+    }
+
+    /**
+     * 分页加载回调，可以在任意线程调用
+     */
+    public class PageCallback {
+
+        private final int mPage;
+
+        PageCallback(int page) {
+            mPage = page;
+        }
+
+        /**
+         * 加载成功
+         * @param items     该页数据
+         */
+        public void onLoaded(final List<T> items) {
+            final List<T> copy = new ArrayList<T>(items);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPageLoaded(mPage, copy);
+                }
+            });
+        }
+
+        /**
+         * 加载失败，下次访问到该页时会重新加载
+         */
+        public void onError() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPageLoaded(mPage, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * 分页加载器
+     * @param <T>   数据类型
+     */
+    public interface PageLoader<T> {
+
+        /**
+         * 加载一页数据，在主线程调用，耗时操作需要自己切到后台线程
+         * @param page      页码，从0开始
+         * @param start     该页第一项的索引
+         * @param count     该页数量
+         * @param callback  加载完成后回调
+         */
+        void loadPage(int page, int start, int count, PagedDataList<T>.PageCallback callback);
+    }
+}
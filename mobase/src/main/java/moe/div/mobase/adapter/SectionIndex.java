@@ -0,0 +1,151 @@
+package moe.div.mobase.adapter;
+
+/**
+ * @author 林墨
+ * @time 20/5/23  10:12
+ * @desc 分组列表的位置索引，每组占一个头部加若干子项。
+ * 用树状数组保存各组大小的前缀和，平铺索引与(组, 组内偏移)互相转换、修改单个组的大小都是O(log n)
+ */
+public final class SectionIndex {
+
+    /**
+     * 每组占用的位置数，包含头部
+     */
+    private int[] mSizes = new int[0];
+
+    /**
+     * 树状数组，下标从1开始
+     */
+    private int[] mTree = new int[1];
+
+    /**
+     * 组数
+     */
+    private int mCount;
+
+    /**
+     * 总位置数
+     */
+    private int mTotal;
+
+    /**
+     * 不超过组数的最大2的幂，查找时使用
+     */
+    private int mHighBit;
+
+    /**
+     * 按各组子项数量重建索引，O(n)
+     * @param itemCounts    各组子项数量，不含头部
+     */
+    public void setItemCounts(int[] itemCounts) {
+        int count = itemCounts.length;
+        mSizes = new int[count];
+        mTree = new int[count + 1];
+        mCount = count;
+        mTotal = 0;
+        for (int i = 0; i < count; i++) {
+            mSizes[i] = itemCounts[i] + 1;
+            mTotal += mSizes[i];
+            int node = i + 1;
+            mTree[node] += mSizes[i];
+            int parent = node + (node & -node);
+            if (parent <= count) {
+                mTree[parent] += mTree[node];
+            }
+        }
+        mHighBit = Integer.highestOneBit(count);
+    }
+
+    /**
+     * 修改一组的子项数量，只更新受影响的节点，O(log n)
+     * @param section       组
+     * @param itemCount     子项数量，不含头部
+     */
+    public void setItemCount(int section, int itemCount) {
+        int delta = itemCount + 1 - mSizes[section];
+        if (delta == 0) {
+            return;
+        }
+        mSizes[section] += delta;
+        mTotal += delta;
+        for (int node = section + 1; node <= mCount; node += node & -node) {
+            mTree[node] += delta;
+        }
+    }
+
+    /**
+     * 获取一组的子项数量
+     * @param section   组
+     * @return  子项数量，不含头部
+     */
+    public int getItemCount(int section) {
+        return mSizes[section] - 1;
+    }
+
+    /**
+     * 获取组数
+     * @return  组数
+     */
+    public int getSectionCount() {
+        return mCount;
+    }
+
+    /**
+     * 获取总位置数，包含所有头部
+     * @return  总位置数
+     */
+    public int getTotalCount() {
+        return mTotal;
+    }
+
+    /**
+     * 获取一组头部的平铺索引
+     * @param section   组
+     * @return  平铺索引
+     */
+    public int getSectionStart(int section) {
+        int sum = 0;
+        for (int node = section; node > 0; node -= node & -node) {
+            sum += mTree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * 获取平铺索引所在的组
+     * @param position  平铺索引
+     * @return  组
+     */
+    public int getSectionForPosition(int position) {
+        // 找前缀和不超过position的最多组数，即所在组的下标
+        int section = 0;
+        int remaining = position;
+        for (int step = mHighBit; step > 0; step >>= 1) {
+            int next = section + step;
+            if (next <= mCount && mTree[next] <= remaining) {
+                section = next;
+                remaining -= mTree[next];
+            }
+        }
+        return section;
+    }
+
+    /**
+     * 获取平铺索引在组内的偏移
+     * @param position  平铺索引
+     * @return  组内子项的偏移，头部为-1
+     */
+    public int getOffsetInSection(int position) {
+        int section = getSectionForPosition(position);
+        return position - getSectionStart(section) - 1;
+    }
+
+    /**
+     * 判断平铺索引是否是头部
+     * @param position  平铺索引
+     * @return  是否是头部
+     */
+    public boolean isHeader(int position) {
+        return getOffsetInSection(position) < 0;
+    }
+}
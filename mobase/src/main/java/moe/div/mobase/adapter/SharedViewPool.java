@@ -0,0 +1,83 @@
+package moe.div.mobase.adapter;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/4/18  16:30
+ * @desc 共享的ViewHolder缓存池，同一个界面里的多个列表使用同一套视图类型时可以互相复用，
+ * 通过{@link #setMaxRecycledViews(int, int)}设置每种类型的容量。
+ * 缓存的视图持有创建它时的Context，所以缓存池跟着Activity走：{@link #get(LifecycleOwner)}按Activity创建，
+ * 其中的Fragment、ViewPager各页传自己进来也拿到同一个，切换页面时可以互相复用；Activity销毁时自动清空并移除。
+ * Fragment的视图用了不同的Context（比如单独的主题）时用{@link #getForOwner(LifecycleOwner)}按Fragment单独创建；
+ * 也可以直接new一个自己管理
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool {
+
+    /**
+     * 每个界面对应的缓存池，界面被回收后自动移除
+     */
+    private static final Map<LifecycleOwner, SharedViewPool> sPools =
+            new WeakHashMap<LifecycleOwner, SharedViewPool>();
+
+    /**
+     * 获取Activity范围的缓存池，Activity销毁时自动清空，只能在主线程调用。
+     * 传入Fragment时使用它所在Activity的缓存池，同一个Activity里的所有页面共用
+     * @param owner     Activity或者已经添加到Activity的Fragment
+     * @return  Activity的缓存池
+     */
+    public static SharedViewPool get(LifecycleOwner owner) {
+        if (owner instanceof Fragment) {
+            return getForOwner(((Fragment) owner).requireActivity());
+        }
+        return getForOwner(owner);
+    }
+
+    /**
+     * 获取只属于某个界面的缓存池，界面销毁时自动清空，只能在主线程调用。
+     * 传入Fragment时不和Activity、其它Fragment共用
+     * @param owner     界面
+     * @return  该界面的缓存池
+     */
+    public static SharedViewPool getForOwner(LifecycleOwner owner) {
+        SharedViewPool pool = sPools.get(owner);
+        if (pool != null) {
+            return pool;
+        }
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            throw new IllegalStateException("Cannot create a view pool for a destroyed owner");
+        }
+        final SharedViewPool created = new SharedViewPool();
+        sPools.put(owner, created);
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    sPools.remove(source);
+                    created.clear();
+                }
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 批量设置视图类型的容量
+     * @param viewTypes     视图类型
+     * @param max           每种类型最多缓存的数量
+     */
+    public void setMaxRecycledViews(int[] viewTypes, int max) {
+        for (int viewType : viewTypes) {
+            setMaxRecycledViews(viewType, max);
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package moe.div.mobase.adapter;
+
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+
+/**
+ * @author 林墨
+ * @time 20/5/9  20:15
+ * @desc 适配器的有序模式，数据始终按比较器排好序，插入时二分查找位置，
+ * 排序字段变化的更新转成移动通知。唯一键到对象的映射用来找到更新前的对象，
+ * 再用二分查找定位，不需要整表扫描。
+ * 更新时请传入新的对象：直接修改原对象的排序字段后，旧位置无法二分查找，只能退回整表扫描
+ */
+final class SortedMode<T> {
+
+    private final MoBaseRecyclerAdapter<T, ?> mAdapter;
+
+    private final Comparator<? super T> mComparator;
+
+    private final MoBaseRecyclerAdapter.KeyExtractor<T> mKeyExtractor;
+
+    /**
+     * 唯一键对应的当前对象，唯一键不装箱
+     */
+    private final LongSparseArray<T> mItems = new LongSparseArray<T>();
+
+    SortedMode(MoBaseRecyclerAdapter<T, ?> adapter, Comparator<? super T> comparator,
+               MoBaseRecyclerAdapter.KeyExtractor<T> keyExtractor) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("Comparator must not be null");
+        }
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("Key extractor must not be null");
+        }
+        mAdapter = adapter;
+        mComparator = comparator;
+        mKeyExtractor = keyExtractor;
+        List<T> data = adapter.getData();
+        Collections.sort(data, comparator);
+        for (T t : data) {
+            mItems.put(keyExtractor.getKey(t), t);
+        }
+        adapter.mModCount++;
+        if (!data.isEmpty()) {
+            // 排序改变了现有数据的顺序，列表需要整体刷新
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * 插入一个数据，唯一键已存在时按更新处理
+     * @param item  数据
+     * @return  插入后的索引
+     */
+    int add(T item) {
+        T old = mItems.get(mKeyExtractor.getKey(item));
+        if (old != null) {
+            return update(old, item, null);
+        }
+        List<T> data = mAdapter.getData();
+        int position = upperBound(data, item);
+        data.add(position, item);
+        mItems.put(mKeyExtractor.getKey(item), item);
+        mAdapter.mModCount++;
+        mAdapter.notifyItemInserted(position);
+        return position;
+    }
+
+    /**
+     * 批量插入，新数据排好序后与原数据归并一遍，连续插入的位置合并成一次范围通知
+     * @param items     数据集合
+     */
+    void addAll(List<T> items) {
+        // 同一批里唯一键重复的以后来的为准
+        LongSparseArray<T> batch = new LongSparseArray<T>(items.size());
+        for (T item : items) {
+            batch.put(mKeyExtractor.getKey(item), item);
+        }
+        List<T> fresh = new ArrayList<T>(batch.size());
+        for (T item : items) {
+            long key = mKeyExtractor.getKey(item);
+            if (batch.get(key) != item) {
+                // 被同一批里后面的对象覆盖了，或者已经处理过
+                continue;
+            }
+            batch.remove(key);
+            T old = mItems.get(key);
+            if (old != null) {
+                update(old, item, null);
+            } else {
+                fresh.add(item);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+        if (fresh.size() == 1) {
+            add(fresh.get(0));
+            return;
+        }
+        Collections.sort(fresh, mComparator);
+        List<T> data = mAdapter.getData();
+        List<T> merged = new ArrayList<T>(data.size() + fresh.size());
+        int[] inserted = UpdateMerger.mergeSorted(data, fresh, mComparator, merged);
+        // 归并结果直接作为新的数据集合，不再复制回原集合
+        mAdapter.mList = merged;
+        for (T item : fresh) {
+            mItems.put(mKeyExtractor.getKey(item), item);
+        }
+        mAdapter.mModCount++;
+        BatchingListUpdateCallback callback =
+                new BatchingListUpdateCallback(new AdapterListUpdateCallback(mAdapter));
+        for (int position : inserted) {
+            callback.onInserted(position, 1);
+        }
+        callback.dispatchLastEvent();
+    }
+
+    /**
+     * 更新一个数据，唯一键不存在时按插入处理
+     * @param item      新数据
+     * @param payload   变化的内容，为null时全量刷新
+     * @return  更新后的索引
+     */
+    int update(T item, Object payload) {
+        T old = mItems.get(mKeyExtractor.getKey(item));
+        if (old == null) {
+            return add(item);
+        }
+        return update(old, item, payload);
+    }
+
+    private int update(T old, T item, Object payload) {
+        List<T> data = mAdapter.getData();
+        int from = indexOf(data, old);
+        mItems.put(mKeyExtractor.getKey(item), item);
+        mAdapter.mModCount++;
+        int last = data.size() - 1;
+        if ((from == 0 || mComparator.compare(data.get(from - 1), item) <= 0)
+                && (from == last || mComparator.compare(item, data.get(from + 1)) <= 0)) {
+            // 排序位置没变，原地替换
+            data.set(from, item);
+            mAdapter.notifyItemChanged(from, payload);
+            return from;
+        }
+        data.remove(from);
+        int to = upperBound(data, item);
+        data.add(to, item);
+        mAdapter.notifyItemMoved(from, to);
+        mAdapter.notifyItemChanged(to, payload);
+        return to;
+    }
+
+    /**
+     * 通过唯一键删除一个数据
+     * @param key   唯一键
+     * @return  是否存在并被删除
+     */
+    boolean remove(long key) {
+        T old = mItems.get(key);
+        if (old == null) {
+            return false;
+        }
+        mItems.remove(key);
+        List<T> data = mAdapter.getData();
+        int position = indexOf(data, old);
+        data.remove(position);
+        mAdapter.mModCount++;
+        mAdapter.notifyItemRemoved(position);
+        return true;
+    }
+
+    /**
+     * 二分查找对象所在位置，排序值相同的一段里再按唯一键比对。
+     * 对象的排序字段被直接修改过时二分查找找不到，退回按唯一键整表扫描
+     */
+    private int indexOf(List<T> data, T item) {
+        long key = mKeyExtractor.getKey(item);
+        for (int i = lowerBound(data, item), size = data.size(); i < size; i++) {
+            T current = data.get(i);
+            if (mComparator.compare(current, item) != 0) {
+                break;
+            }
+            if (mKeyExtractor.getKey(current) == key) {
+                return i;
+            }
+        }
+        for (int i = 0, size = data.size(); i < size; i++) {
+            if (mKeyExtractor.getKey(data.get(i)) == key) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Sorted data changed outside of sorted mode");
+    }
+
+    /**
+     * 第一个不小于item的位置
+     */
+    private int lowerBound(List<T> data, T item) {
+        int low = 0;
+        int high = data.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mComparator.compare(data.get(mid), item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个大于item的位置，排序值相同的新数据排在后面
+     */
+    private int upperBound(List<T> data, T item) {
+        int low = 0;
+        int high = data.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mComparator.compare(data.get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
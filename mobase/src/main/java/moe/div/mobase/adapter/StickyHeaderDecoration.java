@@ -0,0 +1,146 @@
+package moe.div.mobase.adapter;
+
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/5/23  14:50
+ * @desc 分组列表的吸顶头部，配合{@link MoSectionedAdapter}和纵向LinearLayoutManager使用。
+ * 当前组通过{@link SectionIndex}以O(log n)查出，头部视图只创建一次，组变化时才重新绑定。
+ * 会监听适配器的数据变化，不再使用时调用{@link #release()}
+ */
+public class StickyHeaderDecoration<VH extends RecyclerView.ViewHolder> extends RecyclerView.ItemDecoration {
+
+    private final MoSectionedAdapter<?, ?, VH> mAdapter;
+
+    /**
+     * 吸顶用的头部ViewHolder
+     */
+    private VH mHeaderHolder;
+
+    /**
+     * 头部当前绑定的组，-1表示需要重新绑定
+     */
+    private int mHeaderSection = -1;
+
+    /**
+     * 数据变化后头部内容可能变了，下次绘制时重新绑定
+     */
+    private final RecyclerView.AdapterDataObserver mObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            mHeaderSection = -1;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mHeaderSection = -1;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mHeaderSection = -1;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mHeaderSection = -1;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mHeaderSection = -1;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            mHeaderSection = -1;
+        }
+    };
+
+    /**
+     * 是否还在监听适配器
+     */
+    private boolean mRegistered;
+
+    public StickyHeaderDecoration(MoSectionedAdapter<?, ?, VH> adapter) {
+        mAdapter = adapter;
+        adapter.registerAdapterDataObserver(mObserver);
+        mRegistered = true;
+    }
+
+    /**
+     * 停止监听适配器并丢弃头部视图，从列表上移除后调用，之后不能再使用
+     * @param parent    装饰所在的列表，为null时只停止监听
+     */
+    public void release(RecyclerView parent) {
+        if (parent != null) {
+            parent.removeItemDecoration(this);
+        }
+        release();
+    }
+
+    /**
+     * 停止监听适配器并丢弃头部视图，之后不能再使用
+     */
+    public void release() {
+        if (mRegistered) {
+            mAdapter.unregisterAdapterDataObserver(mObserver);
+            mRegistered = false;
+        }
+        mHeaderHolder = null;
+        mHeaderSection = -1;
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (parent.getChildCount() == 0 || mAdapter.getSectionCount() == 0) {
+            return;
+        }
+        int firstPosition = parent.getChildAdapterPosition(parent.getChildAt(0));
+        if (firstPosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int section = mAdapter.getSectionForPosition(firstPosition);
+        View header = getHeaderView(parent, section);
+        // 下一组的头部顶上来时把当前头部推上去
+        int offset = 0;
+        if (section + 1 < mAdapter.getSectionCount()) {
+            int childIndex = mAdapter.getPositionForSection(section + 1) - firstPosition;
+            if (childIndex < parent.getChildCount()) {
+                int nextTop = parent.getChildAt(childIndex).getTop();
+                if (nextTop < header.getHeight()) {
+                    offset = nextTop - header.getHeight();
+                }
+            }
+        }
+        int saveCount = c.save();
+        c.translate(parent.getPaddingLeft(), parent.getPaddingTop() + offset);
+        header.draw(c);
+        c.restoreToCount(saveCount);
+    }
+
+    private View getHeaderView(RecyclerView parent, int section) {
+        if (mHeaderHolder == null) {
+            mHeaderHolder = mAdapter.createViewHolder(parent, MoSectionedAdapter.TYPE_SECTION_HEADER);
+            mHeaderSection = -1;
+        }
+        View header = mHeaderHolder.itemView;
+        if (mHeaderSection != section) {
+            mAdapter.bindViewHolder(mHeaderHolder, mAdapter.getPositionForSection(section));
+            mHeaderSection = section;
+            int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+            ViewGroup.LayoutParams lp = header.getLayoutParams();
+            int heightSpec = lp != null && lp.height > 0
+                    ? View.MeasureSpec.makeMeasureSpec(lp.height, View.MeasureSpec.EXACTLY)
+                    : View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+            header.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY), heightSpec);
+            header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+        }
+        return header;
+    }
+}
@@ -0,0 +1,115 @@
+package moe.div.mobase.adapter;
+
+import java.util.Comparator;
+import java.util.List;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+/**
+ * @author 林墨
+ * @time 20/7/11  17:20
+ * @desc 事务、过滤、有序模式里把数据变化合并成局部通知的计算，只依赖ListUpdateCallback，
+ * 不依赖Android，可以直接在JVM上压测。调用方包一层BatchingListUpdateCallback合并相邻的范围
+ */
+final class UpdateMerger {
+
+    /**
+     * 原数据的该索引本身没有修改，只在它之前插入
+     */
+    static final byte OP_NONE = 0;
+
+    /**
+     * 删除原数据的该索引
+     */
+    static final byte OP_REMOVE = 1;
+
+    /**
+     * 替换原数据的该索引
+     */
+    static final byte OP_CHANGE = 2;
+
+    private UpdateMerger() {
+    }
+
+    /**
+     * 按原数据索引升序分发事务的通知，已经处理过的部分使用新索引，之后的部分仍是原数据
+     * @param touched   修改过的原数据索引，升序不重复
+     * @param inserted  每个索引之前插入的数量
+     * @param ops       每个索引本身的修改，超出原数据范围的索引只能是{@link #OP_NONE}
+     * @param payloads  替换时带的payload
+     * @param callback  通知回调
+     */
+    static void dispatchTransaction(int[] touched, int[] inserted, byte[] ops, Object[] payloads,
+                                    ListUpdateCallback callback) {
+        int offset = 0;
+        for (int k = 0; k < touched.length; k++) {
+            if (inserted[k] > 0) {
+                callback.onInserted(touched[k] + offset, inserted[k]);
+                offset += inserted[k];
+            }
+            if (ops[k] == OP_REMOVE) {
+                callback.onRemoved(touched[k] + offset, 1);
+                offset--;
+            } else if (ops[k] == OP_CHANGE) {
+                callback.onChanged(touched[k] + offset, 1, payloads[k]);
+            }
+        }
+    }
+
+    /**
+     * 新旧结果都是同一份原始数据的子序列，按原始索引合并一遍得到删除和插入
+     * @param oldIndices    旧结果在原始数据中的索引，升序
+     * @param oldCount      旧结果数量
+     * @param newIndices    新结果在原始数据中的索引，升序
+     * @param newCount      新结果数量
+     * @param callback      通知回调
+     */
+    static void dispatchSubsequence(int[] oldIndices, int oldCount, int[] newIndices, int newCount,
+                                    ListUpdateCallback callback) {
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldCount || j < newCount) {
+            int oldIndex = i < oldCount ? oldIndices[i] : Integer.MAX_VALUE;
+            int newIndex = j < newCount ? newIndices[j] : Integer.MAX_VALUE;
+            if (oldIndex == newIndex) {
+                position++;
+                i++;
+                j++;
+            } else if (oldIndex < newIndex) {
+                callback.onRemoved(position, 1);
+                i++;
+            } else {
+                callback.onInserted(position, 1);
+                position++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * 把排好序的新数据归并进有序数据，排序值相同时原有数据在前
+     * @param data          原有数据，已排序
+     * @param fresh         新数据，已排序
+     * @param comparator    比较器
+     * @param out           归并结果，需要为空
+     * @param <T>           数据类型
+     * @return  每个新数据在结果中的位置，升序
+     */
+    static <T> int[] mergeSorted(List<T> data, List<T> fresh, Comparator<? super T> comparator, List<T> out) {
+        int size = data.size();
+        int freshSize = fresh.size();
+        int[] inserted = new int[freshSize];
+        int i = 0;
+        int j = 0;
+        while (i < size || j < freshSize) {
+            if (j < freshSize && (i >= size || comparator.compare(fresh.get(j), data.get(i)) < 0)) {
+                inserted[j] = out.size();
+                out.add(fresh.get(j++));
+            } else {
+                out.add(data.get(i++));
+            }
+        }
+        return inserted;
+    }
+}
@@ -3,21 +3,27 @@ package moe.div.mobase.fragment;
 import android.content.DialogInterface;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.view.Gravity;
+import android.os.Message;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import moe.div.mobase.R;
+import moe.div.mobase.activity.MoBaseActivity;
+import moe.div.mobase.weiget.LoadingController;
 import moe.div.mobase.weiget.LoadingDialog;
+import moe.div.mobase.weiget.SafeScheduler;
+import moe.div.mobase.weiget.ToastController;
 
 /**
  * @author 林墨
@@ -27,7 +33,13 @@ import moe.div.mobase.weiget.LoadingDialog;
 public abstract class MoBaseFragment extends Fragment {
 
     /**
-     * 吐司对象，可以防止吐司不断出现新的
+     * 通过软连接持有界面的Handler，界面销毁时自动移除所有等待的消息，
+     * 重复的刷新消息可以用debounce()/throttle()合并
+     */
+    protected SafeScheduler<MoBaseFragment> mHandler = new SafeHandler(this);
+
+    /**
+     * 最近显示的吐司对象，由mToastController复用
      */
     protected Toast mSucceedToast;
 
@@ -37,8 +49,31 @@ public abstract class MoBaseFragment extends Fragment {
     protected TextView mToastHint;
 
     /**
-     * 加载等待对话框对象
+     * 吐司控制，复用吐司布局并合并重复的吐司
      */
+    protected ToastController mToastController;
+
+    /**
+     * 加载等待对话框控制，依附在MoBaseActivity上时使用界面的控制，和界面及其他Fragment共用同一个对话框
+     */
+    protected LoadingController mLoadingController;
+
+    /**
+     * mLoadingController是否由自己创建
+     */
+    private boolean mOwnLoadingController;
+
+    /**
+     * 通过本Fragment显示、还没结束的操作标记，离开界面时一起结束
+     */
+    private final List<Object> mProgressTokens = new ArrayList<Object>();
+
+    /**
+     * 加载等待对话框对象，显示过之后指向mLoadingController复用的对话框
+     * @deprecated 对话框由mLoadingController统一显示和隐藏，请使用{@link LoadingController#getDialog()}，
+     * 不要直接show()、dismiss()或替换
+     */
+    @Deprecated
     protected LoadingDialog mProgressDialog;
 
     @Nullable
@@ -56,6 +91,62 @@ public abstract class MoBaseFragment extends Fragment {
         initEvent();
     }
 
+    @Override
+    public void onDestroy() {
+        mHandler.destroy();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onDetach() {
+        // 保留实例的Fragment会重新依附到新的界面上，控制对象跟着界面走
+        if(mToastController != null){
+            // 吐司布局用旧界面加载，等待中的吐司直接丢弃
+            mToastController.release();
+            mToastController = null;
+            mSucceedToast = null;
+            mToastHint = null;
+        }
+        if(mLoadingController != null){
+            if(mOwnLoadingController){
+                mLoadingController.release();
+            }else{
+                // 共用界面的对话框时只结束自己的操作
+                for(int i = 0; i < mProgressTokens.size(); i++){
+                    mLoadingController.hide(mProgressTokens.get(i));
+                }
+            }
+            mProgressTokens.clear();
+            mLoadingController = null;
+            mOwnLoadingController = false;
+            mProgressDialog = null;
+        }
+        super.onDetach();
+    }
+
+    /**
+     * 通过软连接保存的Handler,避免产生内存泄漏
+     */
+    private static class SafeHandler extends SafeScheduler<MoBaseFragment> {
+
+        SafeHandler(MoBaseFragment fragment){
+            super(fragment);
+        }
+
+        @Override
+        protected void handleMessage(MoBaseFragment fragment, Message msg) {
+            fragment.handleSafeMessage(msg);
+        }
+    }
+
+    /**
+     * 处理Handler消息的方法，界面销毁之后不会再调用
+     * @param msg   Handler消息
+     */
+    protected void handleSafeMessage(Message msg){
+        // 空实现
+    }
+
     /**
      * 初始化布局
      * @param inflater 				打气筒
@@ -98,7 +189,11 @@ public abstract class MoBaseFragment extends Fragment {
      * @param text  显示文本
      */
     public void showToast(String text){
-        Toast.makeText(getActivity(), text, Toast.LENGTH_SHORT).show();
+        if(obtainToastController() == null){
+            return;
+        }
+        mToastController.showText(text);
+        mSucceedToast = mToastController.getToast();
     }
 
     /**
@@ -109,42 +204,41 @@ public abstract class MoBaseFragment extends Fragment {
     }
 
     /**
-     * 显示成功 Toast
+     * 显示成功 Toast，布局只加载一次，重复的内容会合并
      * @param hint  显示文本
      */
     public void showSucceedToast(String hint){
-        mSucceedToast = Toast.makeText(getActivity().getApplicationContext(), "Normarl toast", Toast.LENGTH_SHORT);
-        mSucceedToast.setGravity(Gravity.CENTER, 0, 0);
-        LayoutInflater inflater = LayoutInflater.from(getActivity());
-        View view = inflater.inflate(R.layout.toast_vote_succeed_layout, null);
-        mToastHint = (TextView) view.findViewById(R.id.hint_text);
-        mSucceedToast.setView(view);
-        if(hint != null){
-            mToastHint.setText(hint);
+        if(obtainToastController() == null){
+            return;
         }
-        mSucceedToast.show();
+        mToastHint = mToastController.getSucceedHint();
+        mToastController.showSucceed(hint);
+        mSucceedToast = mToastController.getToast();
     }
 
     /**
-     * 显示提示吐司
+     * 显示提示吐司，布局只加载一次，重复的内容会合并
      * @param resId     图片资源ID
      * @param hint      显示文本
      */
     public void showMoToast(@DrawableRes int resId, String hint){
-        mSucceedToast = Toast.makeText(getActivity().getApplicationContext(), "Normarl toast", Toast.LENGTH_SHORT);
-        mSucceedToast.setGravity(Gravity.CENTER, 0, 0);
-        LayoutInflater inflater = LayoutInflater.from(getActivity());
-        View view = inflater.inflate(R.layout.toast_info_layout, null);
-        ImageView hintImage = (ImageView) view.findViewById(R.id.hint_image);
-        TextView hintText = (TextView) view.findViewById(R.id.hint_text);
-        mSucceedToast.setView(view);
-        hintImage.setImageResource(resId);
-        if(hint != null){
-            hintText.setText(hint);
+        if(obtainToastController() == null){
+            return;
         }
-        mSucceedToast.show();
+        mToastController.showInfo(resId, hint);
+        mSucceedToast = mToastController.getToast();
     }
 
+    /**
+     * 获取吐司控制，界面还没依附到Activity时为null
+     * @return  吐司控制
+     */
+    private ToastController obtainToastController(){
+        if(mToastController == null && getActivity() != null){
+            mToastController = new ToastController(getActivity());
+        }
+        return mToastController;
+    }
 
 
     /**
@@ -159,7 +253,7 @@ public abstract class MoBaseFragment extends Fragment {
      * @param cancelable    是否可以取消
      */
     public void showProgressDialog(boolean cancelable){
-        showProgressDialog(false, null);
+        showProgressDialog(cancelable, null);
     }
 
     /**
@@ -168,24 +262,50 @@ public abstract class MoBaseFragment extends Fragment {
      * @param cancelListener    取消监听器
      */
     public void showProgressDialog(boolean cancelable, DialogInterface.OnCancelListener cancelListener){
-        if(mProgressDialog != null){
-            mProgressDialog.dismiss();
-            mProgressDialog = null;
-        }
-        // 初始化等待对话框
-        mProgressDialog = new LoadingDialog(getActivity());
-        mProgressDialog.setCancelable(cancelable);
-        mProgressDialog.setOnCancelListener(cancelListener);
-        mProgressDialog.show();
+        // 以Fragment自身作为操作标记，其他操作还在进行时不会被这里的hide提前隐藏
+        showProgressDialog(this, cancelable, cancelListener);
     }
 
 
     /**
-     * 隐藏等待对话框
+     * 隐藏等待对话框，界面中还有其他操作进行时继续显示
      */
     public void hideProgressDialog(){
-        if(mProgressDialog != null && mProgressDialog.isShowing()){
-            mProgressDialog.dismiss();
+        hideProgressDialog(this);
+    }
+
+    /**
+     * 为一个操作显示加载等待对话框，和界面共用同一个对话框，多个操作同时进行时只显示一个
+     * @param token             操作标记，结束时用同一个对象调用hideProgressDialog(Object)
+     * @param cancelable        是否可以取消
+     * @param cancelListener    取消监听器
+     */
+    public void showProgressDialog(Object token, boolean cancelable, DialogInterface.OnCancelListener cancelListener){
+        if(mLoadingController == null){
+            if(getActivity() instanceof MoBaseActivity){
+                mLoadingController = ((MoBaseActivity) getActivity()).getLoadingController();
+            }else if(getActivity() != null){
+                mLoadingController = new LoadingController(getActivity());
+                mOwnLoadingController = true;
+            }else{
+                return;
+            }
+        }
+        if(!mProgressTokens.contains(token)){
+            mProgressTokens.add(token);
+        }
+        mLoadingController.show(token, cancelable, cancelListener);
+        mProgressDialog = mLoadingController.obtainDialog();
+    }
+
+    /**
+     * 结束一个操作，界面中所有操作都结束后才隐藏等待对话框
+     * @param token     显示时使用的操作标记
+     */
+    public void hideProgressDialog(Object token){
+        mProgressTokens.remove(token);
+        if(mLoadingController != null){
+            mLoadingController.hide(token);
         }
     }
 
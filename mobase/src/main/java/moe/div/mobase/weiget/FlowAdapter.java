@@ -0,0 +1,132 @@
+package moe.div.mobase.weiget;
+
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * @author 林墨
+ * @time 20/6/10  10:25
+ * @desc {@link FlowLayout}的适配器，通过{@link FlowLayout#setAdapter(FlowAdapter)}使用。
+ * 更新数据时与旧数据比较差异，已有的子控件原地重新绑定，只增删变化的部分，
+ * 删掉的子控件放进FlowLayout的缓存里留给之后新增的项复用
+ */
+public abstract class FlowAdapter<T> {
+
+    private List<T> mItems = new ArrayList<T>();
+
+    FlowLayout mHost;
+
+    /**
+     * 设置数据，比较差异后局部更新
+     * @param items     数据集合
+     */
+    public void setData(List<T> items) {
+        final List<T> oldItems = mItems;
+        final List<T> newItems = items == null ? new ArrayList<T>() : new ArrayList<T>(items);
+        mItems = newItems;
+        if (mHost == null) {
+            return;
+        }
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldItems.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newItems.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return FlowAdapter.this.areItemsTheSame(oldItems.get(oldPosition), newItems.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return FlowAdapter.this.areContentsTheSame(oldItems.get(oldPosition), newItems.get(newPosition));
+            }
+        }, false);
+        mHost.dispatchUpdates(result);
+    }
+
+    /**
+     * 获取数据集合
+     * @return  数据集合
+     */
+    public List<T> getData() {
+        return mItems;
+    }
+
+    public int getItemCount() {
+        return mItems.size();
+    }
+
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+
+    /**
+     * 刷新一项
+     * @param position  索引
+     */
+    public void notifyItemChanged(int position) {
+        if (mHost != null) {
+            mHost.rebindChild(position);
+        }
+    }
+
+    /**
+     * 数据集合被直接修改后，重新绑定全部子控件
+     */
+    public void notifyDataSetChanged() {
+        if (mHost != null) {
+            mHost.rebindAll();
+        }
+    }
+
+    void bindView(View view, int position) {
+        onBindView(view, position, mItems.get(position));
+    }
+
+    /**
+     * 判断是不是同一项，默认用equals()
+     * @param oldItem   旧数据
+     * @param newItem   新数据
+     * @return  是否是同一项
+     */
+    protected boolean areItemsTheSame(T oldItem, T newItem) {
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+
+    /**
+     * 判断内容是否相同，不同时会重新绑定，默认与{@link #areItemsTheSame(Object, Object)}一致
+     * @param oldItem   旧数据
+     * @param newItem   新数据
+     * @return  内容是否相同
+     */
+    protected boolean areContentsTheSame(T oldItem, T newItem) {
+        return areItemsTheSame(oldItem, newItem);
+    }
+
+    /**
+     * 创建子控件，缓存里没有可复用的子控件时调用。
+     * inflate时传入parent且attachToRoot为false，子控件才能带上自己的布局参数
+     * @param parent    FlowLayout
+     * @return  子控件
+     */
+    protected abstract View onCreateView(FlowLayout parent);
+
+    /**
+     * 绑定数据，子控件可能是复用的，需要重置所有状态
+     * @param view      子控件
+     * @param position  索引
+     * @param item      数据
+     */
+    protected abstract void onBindView(View view, int position, T item);
+}
@@ -1,10 +1,18 @@
 package moe.div.mobase.weiget;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import moe.div.mobase.R;
+
 /**
  * @author 林墨
  * @time 17/5/24  14:46
@@ -12,16 +20,260 @@ import android.view.ViewGroup;
  */
 public class FlowLayout  extends ViewGroup {
 
+    /**
+     * 默认缓存的子控件数量
+     */
+    private static final int DEFAULT_MAX_SCRAP_VIEWS = 4;
+
+    /**
+     * 换行计算，保存每行和每个子控件的位置
+     */
+    private final FlowLineBreaker mBreaker = new FlowLineBreaker();
+
+    /**
+     * 测量结果有效的子控件数量，之后的子控件还没测量过
+     */
+    private int mMeasuredCount;
+
+    /**
+     * 子控件增删或最大行数变化后，需要全部重新测量
+     */
+    private boolean mStructureChanged = true;
+
+    /**
+     * 上次测量中从这个索引开始的子控件都重新测量过，布局时不能跳过
+     */
+    private int mRemeasuredFrom;
+
+    /**
+     * 最高的子控件高度，包含间距
+     */
+    private int mTallestChild;
+
+    /**
+     * 是否有子控件的高度依赖父容器
+     */
+    private boolean mHeightDependent;
+
+    /**
+     * 上次测量的约束
+     */
+    private int mLastWidthSpec;
+    private int mLastHeightSpec;
+
+    /**
+     * 换行结果是否失效
+     */
+    private boolean mLinesDirty = true;
+
+    /**
+     * 测量、布局次数统计，用来发现多余的测量和布局
+     */
+    private int mMeasurePassCount;
+    private int mLayoutPassCount;
+    private int mChildMeasureCount;
+    private int mChildLayoutCount;
+
+    /**
+     * 最大行数
+     */
+    private int mMaxLines = Integer.MAX_VALUE;
+
+    /**
+     * 超出最大行数时显示的省略提示，始终是最后一个子控件
+     */
+    private View mOverflowView;
+
+    private OnOverflowListener mOnOverflowListener;
+
+    /**
+     * 省略提示上次绑定的省略数量，数量没变时不重复绑定
+     */
+    private int mOverflowBoundCount = -1;
+
+    /**
+     * 省略提示是否显示
+     */
+    private boolean mOverflowShown;
+
+    /**
+     * 当前省略的子控件数量
+     */
+    private int mOverflowCount;
+
+    /**
+     * 适配器，为null时子控件由外部自己增删
+     */
+    private FlowAdapter<?> mAdapter;
+
+    /**
+     * 移除后留着复用的子控件
+     */
+    private final List<View> mScrapViews = new ArrayList<View>();
+
+    private int mMaxScrapViews = DEFAULT_MAX_SCRAP_VIEWS;
+
+    /**
+     * 分发差异时新增或内容变化、需要按最终位置绑定的子控件
+     */
+    private final List<View> mPendingBind = new ArrayList<View>();
+
+    /**
+     * 把差异转换成子控件的增删，新增和变化的子控件等全部分发完再绑定
+     */
+    private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                View view = obtainView();
+                mPendingBind.add(view);
+                addView(view, position + i);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                View view = getChildAt(position);
+                removeViewAt(position);
+                mPendingBind.remove(view);
+                recycleView(view);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            View view = getChildAt(fromPosition);
+            removeViewAt(fromPosition);
+            addView(view, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            for (int i = 0; i < count; i++) {
+                View view = getChildAt(position + i);
+                if (!mPendingBind.contains(view)) {
+                    mPendingBind.add(view);
+                }
+            }
+        }
+    };
+
     public FlowLayout(Context context) {
         super(context);
     }
 
     public FlowLayout(Context context, AttributeSet attrs) {
-        super(context, attrs);
+        this(context, attrs, 0);
     }
 
     public FlowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.FlowLayout, defStyleAttr, 0);
+        int maxLines = a.getInt(R.styleable.FlowLayout_android_maxLines, 0);
+        a.recycle();
+        if (maxLines > 0) {
+            mMaxLines = maxLines;
+        }
+    }
+
+    /**
+     * 设置最大行数，超出的子控件不测量也不显示
+     * @param maxLines  最大行数，小于1时不限制
+     */
+    public void setMaxLines(int maxLines) {
+        int lines = maxLines < 1 ? Integer.MAX_VALUE : maxLines;
+        if (lines != mMaxLines) {
+            mMaxLines = lines;
+            mStructureChanged = true;
+            requestLayout();
+        }
+    }
+
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    /**
+     * 设置超出最大行数时显示在最后一行末尾的省略提示，如"+N"
+     * @param view      省略提示，为null时移除
+     * @param listener  省略数量变化时回调，用来更新提示内容
+     */
+    public void setOverflowView(View view, OnOverflowListener listener) {
+        if (mOverflowView != null) {
+            View old = mOverflowView;
+            mOverflowView = null;
+            removeView(old);
+        }
+        mOverflowView = view;
+        mOnOverflowListener = listener;
+        mOverflowBoundCount = -1;
+        if (view != null) {
+            addView(view);
+        }
+    }
+
+    /**
+     * 获取当前省略的子控件数量
+     * @return  数量，没有设置或没显示省略提示时为0
+     */
+    public int getOverflowCount() {
+        return mOverflowCount;
+    }
+
+    /**
+     * 获取实际计算换行的次数，测量结果复用时不计入
+     * @return  次数
+     */
+    public int getMeasurePassCount() {
+        return mMeasurePassCount;
+    }
+
+    public int getLayoutPassCount() {
+        return mLayoutPassCount;
+    }
+
+    /**
+     * 获取测量子控件的次数，包含省略提示
+     * @return  次数
+     */
+    public int getChildMeasureCount() {
+        return mChildMeasureCount;
+    }
+
+    /**
+     * 获取调用子控件layout()的次数
+     * @return  次数
+     */
+    public int getChildLayoutCount() {
+        return mChildLayoutCount;
+    }
+
+    /**
+     * 清空测量、布局次数统计，可以在测试或性能检查里按帧对比
+     */
+    public void resetPassCounts() {
+        mMeasurePassCount = 0;
+        mLayoutPassCount = 0;
+        mChildMeasureCount = 0;
+        mChildLayoutCount = 0;
+    }
+
+    @Override
+    public void addView(View child, int index, LayoutParams params) {
+        //省略提示始终保持在最后
+        int last = getChildCount() - 1;
+        if (mOverflowView != null && child != mOverflowView && (index < 0 || index > last)) {
+            index = last;
+        }
+        super.addView(child, index, params);
+    }
+
+    /**
+     * 获取普通子控件数量，不含省略提示
+     */
+    private int getContentChildCount() {
+        return mOverflowView == null ? getChildCount() : getChildCount() - 1;
     }
 
     /**
@@ -50,96 +302,374 @@ public class FlowLayout  extends ViewGroup {
             LayoutParams.MATCH_PARENT);
     }
 
+    /**
+     * 设置适配器，会移除现有的全部子控件
+     * @param adapter   适配器，为null时清空
+     */
+    public void setAdapter(FlowAdapter<?> adapter) {
+        if (mAdapter != null) {
+            mAdapter.mHost = null;
+        }
+        removeAllViews();
+        if (mOverflowView != null) {
+            addView(mOverflowView);
+        }
+        mScrapViews.clear();
+        mAdapter = adapter;
+        if (adapter != null) {
+            adapter.mHost = this;
+            rebindAll();
+        }
+    }
+
+    public FlowAdapter<?> getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * 设置最多缓存几个移除的子控件
+     * @param max   数量
+     */
+    public void setMaxScrapViews(int max) {
+        mMaxScrapViews = max;
+        while (mScrapViews.size() > max) {
+            mScrapViews.remove(mScrapViews.size() - 1);
+        }
+    }
+
+    void dispatchUpdates(DiffUtil.DiffResult result) {
+        result.dispatchUpdatesTo(mUpdateCallback);
+        for (int i = 0, count = getChildCount(); i < count && !mPendingBind.isEmpty(); i++) {
+            View child = getChildAt(i);
+            if (mPendingBind.remove(child)) {
+                mAdapter.bindView(child, i);
+            }
+        }
+        mPendingBind.clear();
+    }
+
+    void rebindChild(int position) {
+        mAdapter.bindView(getChildAt(position), position);
+    }
+
+    /**
+     * 子控件数量调整到与数据一致，再全部重新绑定
+     */
+    void rebindAll() {
+        int itemCount = mAdapter.getItemCount();
+        while (getContentChildCount() > itemCount) {
+            int last = getContentChildCount() - 1;
+            View view = getChildAt(last);
+            removeViewAt(last);
+            recycleView(view);
+        }
+        while (getContentChildCount() < itemCount) {
+            addView(obtainView());
+        }
+        for (int i = 0; i < itemCount; i++) {
+            mAdapter.bindView(getChildAt(i), i);
+        }
+    }
+
+    private View obtainView() {
+        if (!mScrapViews.isEmpty()) {
+            return mScrapViews.remove(mScrapViews.size() - 1);
+        }
+        return mAdapter.onCreateView(this);
+    }
+
+    private void recycleView(View view) {
+        if (mScrapViews.size() < mMaxScrapViews) {
+            mScrapViews.add(view);
+        }
+    }
+
+    @Override
+    protected boolean checkLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams;
+    }
+
+    @Override
+    public void requestLayout() {
+        // 子控件变化会沿着父容器一路向上requestLayout，这里标记换行结果失效
+        mLinesDirty = true;
+        super.requestLayout();
+    }
+
+    @Override
+    public void forceLayout() {
+        mLinesDirty = true;
+        super.forceLayout();
+    }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        //子控件索引变了，缓存的测量结果对不上
+        mStructureChanged = true;
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        mStructureChanged = true;
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int measureWidth = MeasureSpec.getSize(widthMeasureSpec);
         int measureHeight = MeasureSpec.getSize(heightMeasureSpec);
         int measureWidthMode = MeasureSpec.getMode(widthMeasureSpec);
         int measureHeightMode = MeasureSpec.getMode(heightMeasureSpec);
 
+        //同一帧里父容器可能用相同的宽度约束测量多次，子控件没变时直接使用上次的换行结果
+        boolean specChanged = widthMeasureSpec != mLastWidthSpec || !isHeightSpecCompatible(heightMeasureSpec);
+        if (mLinesDirty || specChanged) {
+            measureLines(widthMeasureSpec, heightMeasureSpec, specChanged || mStructureChanged);
+            mLastWidthSpec = widthMeasureSpec;
+            mLastHeightSpec = heightMeasureSpec;
+            mLinesDirty = false;
+            mStructureChanged = false;
+        }
+
+        int width = mBreaker.getContentWidth() + getPaddingLeft() + getPaddingRight();
+        int height = mBreaker.getContentHeight() + getPaddingTop() + getPaddingBottom();
+        //当属性是MeasureSpec.EXACTLY时，那么它的高度就是确定的，
+        // 只有当是wrap_content时，根据内部控件的大小来确定它的大小时，大小是不确定的，属性是AT_MOST,此时，就需要我们自己计算它的应当的大小，并设置进去
+        setMeasuredDimension((measureWidthMode == MeasureSpec.EXACTLY) ? measureWidth
+            : width, (measureHeightMode == MeasureSpec.EXACTLY) ? measureHeight
+            : height);
+    }
+
+    /**
+     * 测量子控件并计算换行。约束和子控件结构都没变时，只重新测量请求了布局的子控件，
+     * 从第一个尺寸变化的子控件所在的行开始重新换行，之前的行保持不变。
+     * 达到最大行数后剩下的子控件不再测量，需要时再测量省略提示
+     * @param full  是否全部重新测量
+     */
+    private void measureLines(int widthMeasureSpec, int heightMeasureSpec, boolean full) {
+        mMeasurePassCount++;
+        int count = getContentChildCount();
+        //宽度不限制时不换行
+        int maxWidth = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+            ? Integer.MAX_VALUE
+            : MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight();
+        if (maxWidth != mBreaker.getMaxWidth()) {
+            full = true;
+        }
+        mBreaker.setMaxWidth(maxWidth);
+        mBreaker.setMaxLines(mMaxLines);
 
-        int lineWidth = 0;
-        int lineHeight = 0;
-        int height = 0;
-        int width = 0;
-        int count = getChildCount();
-        for (int i=0;i<count;i++){
+        int validCount = full ? 0 : Math.min(mMeasuredCount, count);
+        int scanned = 0;
+        int start;
+        if (full) {
+            start = mBreaker.restart(0);
+        } else {
+            //子控件的测量结果还在，只有请求了布局的需要重新测量
+            scanned = Math.min(mBreaker.getVisibleEnd(), validCount);
+            int firstChanged = -1;
+            for (int i = 0; i < scanned; i++) {
+                View child = getChildAt(i);
+                int oldWidth = mBreaker.getChildWidth(i);
+                if (child.getVisibility() == GONE) {
+                    if (oldWidth != FlowLineBreaker.GONE && firstChanged < 0) {
+                        firstChanged = i;
+                    }
+                    continue;
+                }
+                if (child.isLayoutRequested() || oldWidth == FlowLineBreaker.GONE) {
+                    measureFlowChild(child, widthMeasureSpec, heightMeasureSpec);
+                    if (firstChanged < 0 && (childWidth(child) != oldWidth
+                            || childHeight(child) != mBreaker.getChildHeight(i))) {
+                        firstChanged = i;
+                    }
+                }
+            }
+            //没有尺寸变化时只重算最后一行，省略提示可能需要更新
+            start = mBreaker.restart(firstChanged < 0
+                ? mBreaker.getLineCount() - 1
+                : mBreaker.getLineForChild(Math.max(0, firstChanged - 1)));
+        }
+
+        int measuredEnd = start;
+        for (int i = start; i < count; i++) {
             View child = getChildAt(i);
-            measureChild(child,widthMeasureSpec,heightMeasureSpec);
-            //如果忘记重写generateLayoutParams，则hild.getLayoutParams()将不是MarginLayoutParams的实例
-            //在强制转换时就会出错，此时我们把左右间距设置为0，但由于在计算布局宽高时没有加上间距值，就是计算出的宽高要比实际小，所以是onLayout时就会出错
-            MarginLayoutParams lp = null;
-            if (child.getLayoutParams() instanceof MarginLayoutParams) {
-                lp = (MarginLayoutParams) child
-                    .getLayoutParams();
-            }else{
-                lp = new MarginLayoutParams(0,0);
+            if (child.getVisibility() == GONE) {
+                mBreaker.appendGone();
+                continue;
+            }
+            if (i >= validCount || (i >= scanned && child.isLayoutRequested())) {
+                measureFlowChild(child, widthMeasureSpec, heightMeasureSpec);
             }
-            int childWidth = child.getMeasuredWidth() + lp.leftMargin +lp.rightMargin;
-            int childHeight = child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
-
-            if (lineWidth + childWidth > measureWidth){
-                //需要换行
-                width = Math.max(lineWidth,width);
-                height += lineHeight;
-                //因为由于盛不下当前控件，而将此控件调到下一行，所以将此控件的高度和宽度初始化给lineHeight、lineWidth
-                lineHeight = childHeight;
-                lineWidth = childWidth;
-            }else{
-                // 否则累加值lineWidth,lineHeight取最大高度
-                lineHeight = Math.max(lineHeight,childHeight);
-                lineWidth += childWidth;
+            measuredEnd = i + 1;
+            if (!mBreaker.append(childWidth(child), childHeight(child))) {
+                //已经到最大行数，后面的子控件都不显示，也不用测量
+                break;
             }
+        }
+        mBreaker.finish();
+        mMeasuredCount = Math.max(validCount, measuredEnd);
+        mRemeasuredFrom = validCount;
 
-            //最后一行是不会超出width范围的，所以要单独处理
-            if (i == count -1){
-                height += lineHeight;
-                width = Math.max(width,lineWidth);
+        mOverflowShown = false;
+        mOverflowCount = 0;
+        int hidden = mBreaker.isFull() ? countShownChildren(mBreaker.getVisibleEnd(), count) : 0;
+        if (hidden > 0 && mOverflowView != null && mOverflowView.getVisibility() != GONE) {
+            //省略提示放在最后一行末尾，放不下时把最后一行末尾的子控件也省略掉
+            while (true) {
+                if (hidden != mOverflowBoundCount && mOnOverflowListener != null) {
+                    mOnOverflowListener.onOverflow(mOverflowView, hidden);
+                    mOverflowBoundCount = hidden;
+                }
+                measureFlowChild(mOverflowView, widthMeasureSpec, heightMeasureSpec);
+                if (mBreaker.fitOverflow(childWidth(mOverflowView), childHeight(mOverflowView))) {
+                    break;
+                }
+                hidden++;
             }
+            mOverflowShown = true;
+            mOverflowCount = hidden;
+        }
 
+        boolean heightDependent = false;
+        for (int i = 0, end = mBreaker.getVisibleEnd(); i < end && !heightDependent; i++) {
+            View child = getChildAt(i);
+            heightDependent = child.getVisibility() != GONE
+                && child.getLayoutParams().height == LayoutParams.MATCH_PARENT;
         }
-        //当属性是MeasureSpec.EXACTLY时，那么它的高度就是确定的，
-        // 只有当是wrap_content时，根据内部控件的大小来确定它的大小时，大小是不确定的，属性是AT_MOST,此时，就需要我们自己计算它的应当的大小，并设置进去
-        setMeasuredDimension((measureWidthMode == MeasureSpec.EXACTLY) ? measureWidth
-            : width, (measureHeightMode == MeasureSpec.EXACTLY) ? measureHeight
-            : height);
+        int tallest = 0;
+        for (int line = 0; line < mBreaker.getLineCount(); line++) {
+            tallest = Math.max(tallest, mBreaker.getLineHeight(line));
+        }
+        mTallestChild = tallest;
+        mHeightDependent = heightDependent;
+    }
+
+    private void measureFlowChild(View child, int widthMeasureSpec, int heightMeasureSpec) {
+        mChildMeasureCount++;
+        //如果忘记重写generateLayoutParams，则child.getLayoutParams()将不是MarginLayoutParams的实例，此时把间距当作0
+        if (child.getLayoutParams() instanceof MarginLayoutParams) {
+            measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, 0);
+        } else {
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    private static int childWidth(View child) {
+        LayoutParams params = child.getLayoutParams();
+        int width = child.getMeasuredWidth();
+        if (params instanceof MarginLayoutParams) {
+            width += ((MarginLayoutParams) params).leftMargin + ((MarginLayoutParams) params).rightMargin;
+        }
+        return width;
+    }
+
+    private static int childHeight(View child) {
+        LayoutParams params = child.getLayoutParams();
+        int height = child.getMeasuredHeight();
+        if (params instanceof MarginLayoutParams) {
+            height += ((MarginLayoutParams) params).topMargin + ((MarginLayoutParams) params).bottomMargin;
+        }
+        return height;
+    }
+
+    private int countShownChildren(int start, int end) {
+        int shown = 0;
+        for (int i = start; i < end; i++) {
+            if (getChildAt(i).getVisibility() != GONE) {
+                shown++;
+            }
+        }
+        return shown;
+    }
+
+    /**
+     * 高度约束变化时，只要没有子控件依赖父容器高度、也没有子控件被高度约束截断，测量结果就不变
+     */
+    private boolean isHeightSpecCompatible(int heightMeasureSpec) {
+        if (heightMeasureSpec == mLastHeightSpec) {
+            return true;
+        }
+        if (mHeightDependent) {
+            return false;
+        }
+        int available = MeasureSpec.getSize(heightMeasureSpec) - getPaddingTop() - getPaddingBottom();
+        int lastAvailable = MeasureSpec.getSize(mLastHeightSpec) - getPaddingTop() - getPaddingBottom();
+        boolean lastUnbounded = MeasureSpec.getMode(mLastHeightSpec) == MeasureSpec.UNSPECIFIED;
+        boolean unbounded = MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED;
+        return (lastUnbounded || mTallestChild < lastAvailable)
+            && (unbounded || mTallestChild < available);
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        int count = getChildCount();
-        int lineWidth = 0;
-        int lineHeight = 0;
-        int top=0,left=0;
-        for (int i=0; i<count;i++){
+        //直接使用测量时的换行结果，位置没变、也没有请求布局的子控件不再重新布局
+        mLayoutPassCount++;
+        int contentCount = getContentChildCount();
+        int visibleEnd = Math.min(contentCount, mBreaker.getVisibleEnd());
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+        int lineCount = mBreaker.getLineCount();
+        for (int line = 0; line < lineCount; line++) {
+            int top = paddingTop + mBreaker.getLineTop(line);
+            int end = Math.min(mBreaker.getLineEnd(line), visibleEnd);
+            for (int i = mBreaker.getLineStart(line); i < end; i++) {
+                View child = getChildAt(i);
+                if (child.getVisibility() == GONE) {
+                    continue;
+                }
+                layoutChild(child, paddingLeft + mBreaker.getChildLeft(i), top, i >= mRemeasuredFrom);
+            }
+        }
+        //超出最大行数的子控件没有测量，收起来不显示
+        for (int i = visibleEnd; i < contentCount; i++) {
             View child = getChildAt(i);
-            MarginLayoutParams lp = (MarginLayoutParams) child
-                .getLayoutParams();
-            int childWidth = child.getMeasuredWidth()+lp.leftMargin+lp.rightMargin;
-            int childHeight = child.getMeasuredHeight()+lp.topMargin+lp.bottomMargin;
-
-            if (childWidth + lineWidth >getMeasuredWidth()){
-                //如果换行,当前控件将跑到下一行，从最左边开始，所以left就是0，而top则需要加上上一行的行高，才是这个控件的top点;
-                top += lineHeight;
-                left = 0;
-                //同样，重新初始化lineHeight和lineWidth
-                lineHeight = childHeight;
-                lineWidth = childWidth;
-            }else{
-                lineHeight = Math.max(lineHeight,childHeight);
-                lineWidth += childWidth;
+            if (child.getVisibility() != GONE && (child.getWidth() != 0 || child.getHeight() != 0)) {
+                mChildLayoutCount++;
+                child.layout(0, 0, 0, 0);
+            }
+        }
+        if (mOverflowView != null && mOverflowView.getVisibility() != GONE) {
+            if (mOverflowShown && lineCount > 0) {
+                layoutChild(mOverflowView, paddingLeft + mBreaker.getOverflowLeft(),
+                    paddingTop + mBreaker.getLineTop(lineCount - 1), true);
+            } else {
+                mChildLayoutCount++;
+                mOverflowView.layout(0, 0, 0, 0);
             }
-            //计算childView的left,top,right,bottom
-            int lc = left + lp.leftMargin;
-            int tc = top + lp.topMargin;
-            int rc =lc + child.getMeasuredWidth();
-            int bc = tc + child.getMeasuredHeight();
+        }
+    }
+
+    /**
+     * 布局子控件，重新测量过、请求了布局或者位置变了才调用layout
+     */
+    private void layoutChild(View child, int left, int top, boolean remeasured) {
+        LayoutParams params = child.getLayoutParams();
+        MarginLayoutParams lp = params instanceof MarginLayoutParams ? (MarginLayoutParams) params : null;
+        //计算childView的left,top,right,bottom
+        int lc = left + (lp == null ? 0 : lp.leftMargin);
+        int tc = top + (lp == null ? 0 : lp.topMargin);
+        int rc = lc + child.getMeasuredWidth();
+        int bc = tc + child.getMeasuredHeight();
+        if (remeasured || child.isLayoutRequested() || child.getLeft() != lc || child.getTop() != tc
+            || child.getRight() != rc || child.getBottom() != bc) {
+            mChildLayoutCount++;
             child.layout(lc, tc, rc, bc);
-            //将left置为下一子控件的起始点
-            left+=childWidth;
         }
+    }
+
+    /**
+     * 省略数量变化的回调
+     */
+    public interface OnOverflowListener {
 
+        /**
+         * 在测量时调用，更新省略提示的内容
+         * @param overflowView  省略提示
+         * @param hiddenCount   省略的子控件数量
+         */
+        void onOverflow(View overflowView, int hiddenCount);
     }
 
 }
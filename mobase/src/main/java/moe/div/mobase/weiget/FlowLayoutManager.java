@@ -0,0 +1,608 @@
+package moe.div.mobase.weiget;
+
+import android.graphics.PointF;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+import androidx.recyclerview.widget.LinearSmoothScroller;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/6/6  15:40
+ * @desc 流式布局的LayoutManager，换行规则与{@link FlowLayout}一致：从左到右排列，放不下时换行，
+ * 行高取该行最高的子项，子项顶部对齐。只创建、布局可见的子项，适合大量标签。
+ * 换行结果按行缓存，从第一行开始按需计算；子项尺寸按位置缓存，局部刷新时只重算受影响的行。
+ * 滚动跨过已经换行的行时直接跳过，不绑定、不布局；没有测量过的子项只测量一次，测量后立即回收复用
+ */
+public class FlowLayoutManager extends RecyclerView.LayoutManager
+        implements RecyclerView.SmoothScroller.ScrollVectorProvider {
+
+    /**
+     * 高度不限制时的填充高度，留出余量避免和滚动距离相加时溢出
+     */
+    private static final int INFINITE_EXTENT = Integer.MAX_VALUE / 2;
+
+    /**
+     * 每行第一个子项的位置，mLineStart[mLineCount]是下一行的起点
+     */
+    private int[] mLineStart = new int[16];
+
+    /**
+     * 每行顶部在内容中的坐标，mLineTop[mLineCount]是已计算部分的总高度
+     */
+    private int[] mLineTop = new int[16];
+
+    /**
+     * 每行高度
+     */
+    private int[] mLineHeight = new int[16];
+
+    /**
+     * 已计算的行数
+     */
+    private int mLineCount;
+
+    /**
+     * 子项尺寸缓存，包含间距和装饰，-1表示没有测量
+     */
+    private int[] mItemWidth = new int[0];
+    private int[] mItemHeight = new int[0];
+
+    /**
+     * 计算换行时测量过、马上就要布局的子项
+     */
+    private final SparseArray<View> mPending = new SparseArray<View>();
+
+    /**
+     * 当前滚动距离
+     */
+    private int mScrollOffset;
+
+    /**
+     * 当前布局的首行和末行
+     */
+    private int mFirstLine;
+    private int mLastLine = -1;
+
+    /**
+     * 等待滚动到的位置
+     */
+    private int mPendingPosition = RecyclerView.NO_POSITION;
+
+    /**
+     * 等待滚动到的位置所在行顶部相对可见区域的偏移，恢复状态时使用
+     */
+    private int mPendingOffset;
+
+    /**
+     * 上次布局时的可用宽度
+     */
+    private int mLastWidth = -1;
+
+    @Override
+    public RecyclerView.LayoutParams generateDefaultLayoutParams() {
+        return new RecyclerView.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public boolean isAutoMeasureEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return true;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        int itemCount = state.getItemCount();
+        if (itemCount == 0) {
+            removeAndRecycleAllViews(recycler);
+            clearLines();
+            mScrollOffset = 0;
+            mFirstLine = 0;
+            mLastLine = -1;
+            return;
+        }
+        int width = getContentWidth();
+        if (width != mLastWidth) {
+            // 宽度变化后所有换行和match_parent子项的尺寸都失效
+            mLastWidth = width;
+            clearSizes();
+            clearLines();
+        }
+        ensureSizeCapacity(itemCount);
+
+        // 以第一个可见子项为锚点，数据变化后保持它的位置不动
+        int anchor = RecyclerView.NO_POSITION;
+        int anchorDelta = 0;
+        if (mPendingPosition != RecyclerView.NO_POSITION) {
+            anchor = Math.min(mPendingPosition, itemCount - 1);
+            anchorDelta = mPendingOffset;
+            mPendingPosition = RecyclerView.NO_POSITION;
+            mPendingOffset = 0;
+        } else {
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+                if (!lp.isItemRemoved()) {
+                    anchor = Math.min(getPosition(child), itemCount - 1);
+                    anchorDelta = getLineOffset(child);
+                    break;
+                }
+            }
+        }
+        detachAndScrapAttachedViews(recycler);
+
+        if (anchor != RecyclerView.NO_POSITION) {
+            // 锚点之前的行不可见，测量后直接回收
+            ensureLinesUntilPosition(recycler, anchor, itemCount);
+            mScrollOffset = Math.max(0, mLineTop[findLine(anchor)] - anchorDelta);
+        }
+        int height = getFillExtent();
+        ensureLinesUntilOffset(recycler, mScrollOffset, mScrollOffset + height, itemCount);
+        if (mLineStart[mLineCount] >= itemCount && mLineTop[mLineCount] - mScrollOffset < height) {
+            // 已经到底，不留空白
+            mScrollOffset = Math.max(0, mLineTop[mLineCount] - height);
+        }
+
+        mFirstLine = findLineAtOffset(mScrollOffset);
+        mLastLine = mFirstLine - 1;
+        while (mLastLine + 1 < mLineCount && mLineTop[mLastLine + 1] < mScrollOffset + height) {
+            mLastLine++;
+            layoutLine(recycler, mLastLine, false);
+        }
+        recyclePending(recycler);
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (dy == 0 || getChildCount() == 0) {
+            return 0;
+        }
+        int itemCount = state.getItemCount();
+        int height = getFillExtent();
+        if (dy > 0) {
+            ensureLinesUntilOffset(recycler, mScrollOffset + dy, mScrollOffset + dy + height, itemCount);
+            if (mLineStart[mLineCount] >= itemCount) {
+                dy = Math.min(dy, Math.max(0, mLineTop[mLineCount] - height - mScrollOffset));
+            }
+        } else {
+            dy = Math.max(dy, -mScrollOffset);
+        }
+        if (dy == 0) {
+            recyclePending(recycler);
+            return 0;
+        }
+        mScrollOffset += dy;
+        offsetChildrenVertical(-dy);
+
+        int bottom = mScrollOffset + height;
+        // 回收滚出可见区域的行
+        while (mFirstLine <= mLastLine && mLineTop[mFirstLine] + mLineHeight[mFirstLine] <= mScrollOffset) {
+            for (int i = mLineStart[mFirstLine]; i < mLineStart[mFirstLine + 1]; i++) {
+                removeAndRecycleViewAt(0, recycler);
+            }
+            mFirstLine++;
+        }
+        while (mLastLine >= mFirstLine && mLineTop[mLastLine] >= bottom) {
+            for (int i = mLineStart[mLastLine]; i < mLineStart[mLastLine + 1]; i++) {
+                removeAndRecycleViewAt(getChildCount() - 1, recycler);
+            }
+            mLastLine--;
+        }
+        if (mFirstLine > mLastLine) {
+            // 滚动超过一屏，中间的行已经换行，按缓存的行高直接跳到新的可见行
+            mFirstLine = findLineAtOffset(mScrollOffset);
+            mLastLine = mFirstLine - 1;
+        }
+        // 补上两端露出的行
+        while (mLastLine + 1 < mLineCount && mLineTop[mLastLine + 1] < bottom) {
+            mLastLine++;
+            layoutLine(recycler, mLastLine, false);
+        }
+        while (mFirstLine > 0 && mLineTop[mFirstLine - 1] + mLineHeight[mFirstLine - 1] > mScrollOffset) {
+            mFirstLine--;
+            layoutLine(recycler, mFirstLine, true);
+        }
+        recyclePending(recycler);
+        return dy;
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        mPendingPosition = position;
+        mPendingOffset = 0;
+        requestLayout();
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState();
+        if (mPendingPosition != RecyclerView.NO_POSITION) {
+            // 恢复后还没布局，原样保存
+            state.mAnchorPosition = mPendingPosition;
+            state.mAnchorOffset = mPendingOffset;
+        } else if (getChildCount() > 0) {
+            View first = getChildAt(0);
+            state.mAnchorPosition = getPosition(first);
+            state.mAnchorOffset = getLineOffset(first);
+        }
+        return state;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            return;
+        }
+        SavedState saved = (SavedState) state;
+        if (saved.mAnchorPosition != RecyclerView.NO_POSITION) {
+            // 宽度可能变了，换行要重新计算，所以只记录锚点，下次布局时定位
+            mPendingPosition = saved.mAnchorPosition;
+            mPendingOffset = saved.mAnchorOffset;
+            requestLayout();
+        }
+    }
+
+    @Override
+    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state, int position) {
+        LinearSmoothScroller scroller = new LinearSmoothScroller(recyclerView.getContext());
+        scroller.setTargetPosition(position);
+        startSmoothScroll(scroller);
+    }
+
+    @Override
+    public PointF computeScrollVectorForPosition(int targetPosition) {
+        if (getChildCount() == 0) {
+            return null;
+        }
+        return new PointF(0, targetPosition < getPosition(getChildAt(0)) ? -1 : 1);
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        return mScrollOffset;
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return getContentHeight();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        int measured = mLineStart[mLineCount];
+        if (measured == 0) {
+            return 0;
+        }
+        // 没计算到的部分按已计算部分的平均高度估算
+        return (int) ((long) mLineTop[mLineCount] * state.getItemCount() / measured);
+    }
+
+    /**
+     * 获取第一个可见子项的位置
+     * @return  位置，没有子项时为{@link RecyclerView#NO_POSITION}
+     */
+    public int findFirstVisibleItemPosition() {
+        return getChildCount() == 0 ? RecyclerView.NO_POSITION : getPosition(getChildAt(0));
+    }
+
+    /**
+     * 获取最后一个可见子项的位置
+     * @return  位置，没有子项时为{@link RecyclerView#NO_POSITION}
+     */
+    public int findLastVisibleItemPosition() {
+        return getChildCount() == 0 ? RecyclerView.NO_POSITION : getPosition(getChildAt(getChildCount() - 1));
+    }
+
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        removeAllViews();
+        clearSizes();
+        clearLines();
+        mScrollOffset = 0;
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        clearSizes();
+        clearLines();
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        int oldCount = mItemWidth.length;
+        ensureSizeCapacity(oldCount + itemCount);
+        int moved = Math.max(0, oldCount - positionStart);
+        if (moved > 0 && positionStart < oldCount) {
+            System.arraycopy(mItemWidth, positionStart, mItemWidth, positionStart + itemCount, moved);
+            System.arraycopy(mItemHeight, positionStart, mItemHeight, positionStart + itemCount, moved);
+        }
+        Arrays.fill(mItemWidth, positionStart, positionStart + itemCount, -1);
+        Arrays.fill(mItemHeight, positionStart, positionStart + itemCount, -1);
+        invalidateLinesFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        int end = Math.min(mItemWidth.length, positionStart + itemCount);
+        if (positionStart < end) {
+            System.arraycopy(mItemWidth, end, mItemWidth, positionStart, mItemWidth.length - end);
+            System.arraycopy(mItemHeight, end, mItemHeight, positionStart, mItemHeight.length - end);
+            int newLength = mItemWidth.length - (end - positionStart);
+            mItemWidth = Arrays.copyOf(mItemWidth, newLength);
+            mItemHeight = Arrays.copyOf(mItemHeight, newLength);
+        }
+        invalidateLinesFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        int end = Math.min(mItemWidth.length, positionStart + itemCount);
+        if (positionStart < end) {
+            Arrays.fill(mItemWidth, positionStart, end, -1);
+            Arrays.fill(mItemHeight, positionStart, end, -1);
+        }
+        invalidateLinesFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        // 移动不常见，起点之后的尺寸全部重新测量
+        int start = Math.min(from, to);
+        if (start < mItemWidth.length) {
+            Arrays.fill(mItemWidth, start, mItemWidth.length, -1);
+            Arrays.fill(mItemHeight, start, mItemHeight.length, -1);
+        }
+        invalidateLinesFrom(start);
+    }
+
+    /**
+     * 布局一行，子项按位置顺序添加到头部或尾部
+     */
+    private void layoutLine(RecyclerView.Recycler recycler, int line, boolean atStart) {
+        int start = mLineStart[line];
+        int end = mLineStart[line + 1];
+        int top = getPaddingTop() + mLineTop[line] - mScrollOffset;
+        int left = getPaddingLeft();
+        for (int position = start; position < end; position++) {
+            View view = mPending.get(position);
+            if (view != null) {
+                mPending.remove(position);
+            } else {
+                view = recycler.getViewForPosition(position);
+            }
+            if (atStart) {
+                addView(view, position - start);
+            } else {
+                addView(view);
+            }
+            measureChildWithMargins(view, 0, 0);
+            int width = mItemWidth[position];
+            layoutDecoratedWithMargins(view, left, top, left + width, top + mItemHeight[position]);
+            left += width;
+        }
+    }
+
+    private void ensureLinesUntilPosition(RecyclerView.Recycler recycler, int position, int itemCount) {
+        while (mLineStart[mLineCount] <= position && mLineStart[mLineCount] < itemCount) {
+            computeNextLine(recycler, itemCount, false);
+        }
+    }
+
+    /**
+     * 计算到指定距离为止的行
+     * @param keepFrom  从这个距离开始的行测量用的子项留着布局，之前的行不可见，测量后立即回收，
+     *                  下一个子项可以直接复用，不会为跳过的每个子项都创建ViewHolder
+     * @param offset    需要计算到的距离
+     */
+    private void ensureLinesUntilOffset(RecyclerView.Recycler recycler, int keepFrom, int offset, int itemCount) {
+        while (mLineTop[mLineCount] < offset && mLineStart[mLineCount] < itemCount) {
+            computeNextLine(recycler, itemCount, mLineTop[mLineCount] >= keepFrom);
+        }
+    }
+
+    /**
+     * 计算下一行
+     * @param keep  测量用的子项是否留着马上布局，否则直接回收
+     */
+    private void computeNextLine(RecyclerView.Recycler recycler, int itemCount, boolean keep) {
+        int start = mLineStart[mLineCount];
+        int maxWidth = getContentWidth();
+        int lineWidth = 0;
+        int lineHeight = 0;
+        int position = start;
+        while (position < itemCount) {
+            measureItem(recycler, position, keep);
+            int width = mItemWidth[position];
+            if (position > start && lineWidth + width > maxWidth) {
+                break;
+            }
+            lineWidth += width;
+            lineHeight = Math.max(lineHeight, mItemHeight[position]);
+            position++;
+        }
+        ensureLineCapacity(mLineCount + 2);
+        mLineHeight[mLineCount] = lineHeight;
+        mLineCount++;
+        mLineStart[mLineCount] = position;
+        mLineTop[mLineCount] = mLineTop[mLineCount - 1] + lineHeight;
+    }
+
+    private void measureItem(RecyclerView.Recycler recycler, int position, boolean keep) {
+        if (mItemWidth[position] >= 0) {
+            return;
+        }
+        View view = recycler.getViewForPosition(position);
+        measureChildWithMargins(view, 0, 0);
+        ViewGroup.MarginLayoutParams lp = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
+        mItemWidth[position] = getDecoratedMeasuredWidth(view) + lp.leftMargin + lp.rightMargin;
+        mItemHeight[position] = getDecoratedMeasuredHeight(view) + lp.topMargin + lp.bottomMargin;
+        if (keep) {
+            mPending.put(position, view);
+        } else {
+            recycler.recycleView(view);
+        }
+    }
+
+    private void recyclePending(RecyclerView.Recycler recycler) {
+        for (int i = 0; i < mPending.size(); i++) {
+            recycler.recycleView(mPending.valueAt(i));
+        }
+        mPending.clear();
+    }
+
+    /**
+     * 某个位置变化后，它所在的行和上一行都可能重新换行，从上一个位置所在的行开始丢弃
+     */
+    private void invalidateLinesFrom(int position) {
+        if (position > 0) {
+            position--;
+        }
+        if (position < mLineStart[mLineCount]) {
+            mLineCount = findLine(position);
+        }
+    }
+
+    /**
+     * 查找位置所在的行，位置必须已经计算过
+     */
+    private int findLine(int position) {
+        int low = 0;
+        int high = mLineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineStart[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 查找滚动距离所在的行，即第一条底部超过该距离的行
+     */
+    private int findLineAtOffset(int offset) {
+        int low = 0;
+        int high = mLineCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mLineTop[mid] + mLineHeight[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (mLineStart.length < capacity) {
+            int size = Math.max(capacity, mLineStart.length * 2);
+            mLineStart = Arrays.copyOf(mLineStart, size);
+            mLineTop = Arrays.copyOf(mLineTop, size);
+            mLineHeight = Arrays.copyOf(mLineHeight, size);
+        }
+    }
+
+    private void ensureSizeCapacity(int itemCount) {
+        int oldCount = mItemWidth.length;
+        if (oldCount != itemCount) {
+            mItemWidth = Arrays.copyOf(mItemWidth, itemCount);
+            mItemHeight = Arrays.copyOf(mItemHeight, itemCount);
+            if (itemCount > oldCount) {
+                Arrays.fill(mItemWidth, oldCount, itemCount, -1);
+                Arrays.fill(mItemHeight, oldCount, itemCount, -1);
+            }
+        }
+    }
+
+    private void clearSizes() {
+        Arrays.fill(mItemWidth, -1);
+        Arrays.fill(mItemHeight, -1);
+    }
+
+    private void clearLines() {
+        mLineCount = 0;
+        mLineStart[0] = 0;
+        mLineTop[0] = 0;
+    }
+
+    /**
+     * 子项所在行顶部相对可见区域顶部的偏移，子项顶部对齐，所以就是子项顶部的偏移
+     */
+    private int getLineOffset(View child) {
+        RecyclerView.LayoutParams lp = (RecyclerView.LayoutParams) child.getLayoutParams();
+        return getDecoratedTop(child) - lp.topMargin - getPaddingTop();
+    }
+
+    private int getContentWidth() {
+        return getWidth() - getPaddingLeft() - getPaddingRight();
+    }
+
+    private int getContentHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    /**
+     * 需要填满的高度。高度不限制时(比如放在NestedScrollView里)getHeight()为0，
+     * 和LinearLayoutManager一样布局出所有行，由RecyclerView按子项撑开高度
+     */
+    private int getFillExtent() {
+        if (getHeightMode() == View.MeasureSpec.UNSPECIFIED) {
+            return INFINITE_EXTENT;
+        }
+        return getContentHeight();
+    }
+
+    /**
+     * 保存的滚动位置，只记录第一个可见子项和它所在行的偏移，恢复后按新的宽度重新换行
+     */
+    static class SavedState implements Parcelable {
+
+        int mAnchorPosition = RecyclerView.NO_POSITION;
+        int mAnchorOffset;
+
+        SavedState() {
+        }
+
+        SavedState(Parcel in) {
+            mAnchorPosition = in.readInt();
+            mAnchorOffset = in.readInt();
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeInt(mAnchorPosition);
+            dest.writeInt(mAnchorOffset);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+}
@@ -0,0 +1,319 @@
+package moe.div.mobase.weiget;
+
+import java.util.Arrays;
+
+/**
+ * @author 林墨
+ * @time 20/6/20  16:05
+ * @desc 流式布局的换行计算，不依赖Android，可以直接在JVM上测试和压测。
+ * 调用方按顺序逐个{@link #append(int, int)}子控件尺寸，达到最大行数时返回false，后面的子控件不用再测量。
+ * 结果保存在int数组里；某个子控件变化时用{@link #restart(int)}从它所在的行重新计算，前面的行保持不变
+ */
+public final class FlowLineBreaker {
+
+    /**
+     * 不参与布局的子控件
+     */
+    public static final int GONE = -1;
+
+    private int mMaxWidth = Integer.MAX_VALUE;
+
+    private int mMaxLines = Integer.MAX_VALUE;
+
+    /**
+     * 每个子控件的宽高，包含间距，不参与布局的为{@link #GONE}
+     */
+    private int[] mWidth = new int[16];
+    private int[] mHeight = new int[16];
+
+    /**
+     * 每个子控件在行内的横向偏移
+     */
+    private int[] mLeft = new int[16];
+
+    /**
+     * 每行第一个子控件的索引、顶部坐标、高度、宽度
+     */
+    private int[] mLineStart = new int[4];
+    private int[] mLineTop = new int[4];
+    private int[] mLineHeight = new int[4];
+    private int[] mLineWidth = new int[4];
+
+    private int mLineCount;
+
+    /**
+     * 最后一行是否还能继续追加
+     */
+    private boolean mLineOpen;
+
+    /**
+     * 下一个追加的子控件索引
+     */
+    private int mNext;
+
+    /**
+     * 是否已经达到最大行数
+     */
+    private boolean mFull;
+
+    /**
+     * 参与布局的子控件范围[0, mVisibleEnd)
+     */
+    private int mVisibleEnd;
+
+    /**
+     * 省略提示在最后一行的横向偏移，没有时为-1
+     */
+    private int mOverflowLeft = -1;
+
+    private int mContentWidth;
+    private int mContentHeight;
+
+    /**
+     * 设置每行可用宽度，修改后需要restart(0)
+     * @param maxWidth  可用宽度，不限制时为Integer.MAX_VALUE
+     */
+    public void setMaxWidth(int maxWidth) {
+        mMaxWidth = maxWidth;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    /**
+     * 设置最大行数，修改后需要restart(0)
+     * @param maxLines  最大行数，不限制时为Integer.MAX_VALUE
+     */
+    public void setMaxLines(int maxLines) {
+        mMaxLines = Math.max(1, maxLines);
+    }
+
+    /**
+     * 从某一行开始重新计算，之前的行保持不变。
+     * 第k个子控件变化时，它可能挤回上一行，需要从getLineForChild(k - 1)开始
+     * @param line  行
+     * @return  需要从哪个子控件开始重新追加
+     */
+    public int restart(int line) {
+        line = Math.max(0, Math.min(line, mLineCount - 1));
+        // 第一行之前可能有不参与布局的子控件，从头开始
+        mNext = line == 0 ? 0 : mLineStart[line];
+        mLineCount = line;
+        mLineOpen = false;
+        mFull = false;
+        mOverflowLeft = -1;
+        return mNext;
+    }
+
+    /**
+     * 追加下一个子控件
+     * @param width     宽度，包含间距
+     * @param height    高度，包含间距
+     * @return  是否放得下，达到最大行数时返回false，之后不再接受追加
+     */
+    public boolean append(int width, int height) {
+        if (mFull) {
+            return false;
+        }
+        int index = mNext;
+        ensureChildCapacity(index + 1);
+        mWidth[index] = width;
+        mHeight[index] = height;
+        int line = mLineCount - 1;
+        if (!mLineOpen || (mLineWidth[line] > 0 && mLineWidth[line] + width > mMaxWidth)) {
+            if (mLineCount == mMaxLines) {
+                mFull = true;
+                mVisibleEnd = index;
+                return false;
+            }
+            line = openLine(index);
+        }
+        mLeft[index] = mLineWidth[line];
+        mLineWidth[line] += width;
+        mLineHeight[line] = Math.max(mLineHeight[line], height);
+        mNext++;
+        return true;
+    }
+
+    /**
+     * 追加一个不参与布局的子控件
+     */
+    public void appendGone() {
+        if (mFull) {
+            return;
+        }
+        int index = mNext;
+        ensureChildCapacity(index + 1);
+        mWidth[index] = GONE;
+        mHeight[index] = GONE;
+        mLeft[index] = mLineOpen ? mLineWidth[mLineCount - 1] : 0;
+        mNext++;
+    }
+
+    /**
+     * 追加结束，计算内容宽高
+     */
+    public void finish() {
+        if (!mFull) {
+            mVisibleEnd = mNext;
+        }
+        updateContentSize();
+    }
+
+    /**
+     * 在最后一行末尾放置省略提示，放不下时去掉最后一行末尾的一个子控件，
+     * 这时省略数量加一，调用方更新提示内容后需要重新调用
+     * @param width     省略提示宽度，包含间距
+     * @param height    省略提示高度，包含间距
+     * @return  是否已经放下
+     */
+    public boolean fitOverflow(int width, int height) {
+        if (mLineCount == 0) {
+            openLine(mVisibleEnd);
+        }
+        int line = mLineCount - 1;
+        int last = mVisibleEnd - 1;
+        while (last >= mLineStart[line] && mWidth[last] == GONE) {
+            last--;
+        }
+        if (last >= mLineStart[line] && mLineWidth[line] + width > mMaxWidth) {
+            mVisibleEnd = last;
+            mLineWidth[line] = mLeft[last];
+            int lineHeight = 0;
+            for (int i = mLineStart[line]; i < last; i++) {
+                lineHeight = Math.max(lineHeight, mHeight[i]);
+            }
+            mLineHeight[line] = lineHeight;
+            return false;
+        }
+        mOverflowLeft = mLineWidth[line];
+        mLineWidth[line] += width;
+        mLineHeight[line] = Math.max(mLineHeight[line], height);
+        updateContentSize();
+        return true;
+    }
+
+    /**
+     * 查找子控件所在的行
+     * @param index     子控件索引
+     * @return  行，没有任何行时为0
+     */
+    public int getLineForChild(int index) {
+        int low = 0;
+        int high = mLineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineStart[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(0, low);
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    public int getLineStart(int line) {
+        return mLineStart[line];
+    }
+
+    /**
+     * @return  该行最后一个子控件的下一个索引
+     */
+    public int getLineEnd(int line) {
+        return line + 1 < mLineCount ? mLineStart[line + 1] : mVisibleEnd;
+    }
+
+    public int getLineTop(int line) {
+        return mLineTop[line];
+    }
+
+    public int getLineHeight(int line) {
+        return mLineHeight[line];
+    }
+
+    public int getChildLeft(int index) {
+        return mLeft[index];
+    }
+
+    public int getChildWidth(int index) {
+        return mWidth[index];
+    }
+
+    public int getChildHeight(int index) {
+        return mHeight[index];
+    }
+
+    /**
+     * @return  参与布局的子控件数量，之后的子控件被最大行数截掉
+     */
+    public int getVisibleEnd() {
+        return mVisibleEnd;
+    }
+
+    /**
+     * @return  是否达到最大行数
+     */
+    public boolean isFull() {
+        return mFull;
+    }
+
+    /**
+     * @return  省略提示的横向偏移，没有放置时为-1
+     */
+    public int getOverflowLeft() {
+        return mOverflowLeft;
+    }
+
+    public int getContentWidth() {
+        return mContentWidth;
+    }
+
+    public int getContentHeight() {
+        return mContentHeight;
+    }
+
+    private int openLine(int start) {
+        ensureLineCapacity(mLineCount + 1);
+        int line = mLineCount;
+        mLineStart[line] = start;
+        mLineTop[line] = line == 0 ? 0 : mLineTop[line - 1] + mLineHeight[line - 1];
+        mLineHeight[line] = 0;
+        mLineWidth[line] = 0;
+        mLineCount++;
+        mLineOpen = true;
+        return line;
+    }
+
+    private void updateContentSize() {
+        int width = 0;
+        for (int line = 0; line < mLineCount; line++) {
+            width = Math.max(width, mLineWidth[line]);
+        }
+        mContentWidth = width;
+        mContentHeight = mLineCount == 0 ? 0 : mLineTop[mLineCount - 1] + mLineHeight[mLineCount - 1];
+    }
+
+    private void ensureChildCapacity(int capacity) {
+        if (mWidth.length < capacity) {
+            int size = Math.max(capacity, mWidth.length * 2);
+            mWidth = Arrays.copyOf(mWidth, size);
+            mHeight = Arrays.copyOf(mHeight, size);
+            mLeft = Arrays.copyOf(mLeft, size);
+        }
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (mLineStart.length < capacity) {
+            int size = Math.max(capacity, mLineStart.length * 2);
+            mLineStart = Arrays.copyOf(mLineStart, size);
+            mLineTop = Arrays.copyOf(mLineTop, size);
+            mLineHeight = Arrays.copyOf(mLineHeight, size);
+            mLineWidth = Arrays.copyOf(mLineWidth, size);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package moe.div.mobase.weiget;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author 林墨
+ * @time 20/7/4  15:20
+ * @desc 加载等待对话框的显示控制，每个界面复用同一个{@link LoadingDialog}。
+ * show()之后超过宽限时间还没hide()才真正显示，很快结束的请求不会闪一下；
+ * 显示之后至少保持最短显示时间。宽限期内的show/hide、显示期间的hide/show都会直接合并，不产生窗口操作。
+ * 每个进行中的操作用一个token标记，同时有多个操作时只显示一次，全部hide之后才隐藏。
+ * 只能在主线程使用
+ */
+public class LoadingController {
+
+    /**
+     * 默认宽限时间，毫秒
+     */
+    public static final long DEFAULT_SHOW_DELAY = 300;
+
+    /**
+     * 默认最短显示时间，毫秒
+     */
+    public static final long DEFAULT_MIN_SHOW_TIME = 500;
+
+    private final Context mContext;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 第一次显示时创建，之后一直复用
+     */
+    private LoadingDialog mDialog;
+
+    private long mShowDelay = DEFAULT_SHOW_DELAY;
+
+    private long mMinShowTime = DEFAULT_MIN_SHOW_TIME;
+
+    /**
+     * 对话框显示的时间点，没显示时为-1
+     */
+    private long mShownAt = -1;
+
+    /**
+     * 是否在等待宽限时间结束
+     */
+    private boolean mShowPending;
+
+    /**
+     * 进行中的操作，token对应是否可以取消和取消监听器
+     */
+    private final Map<Object, Holder> mHolders = new LinkedHashMap<Object, Holder>();
+
+    private final Runnable mShowRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mShowPending = false;
+            showNow();
+        }
+    };
+
+    private final Runnable mHideRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dismissNow();
+        }
+    };
+
+    /**
+     * 用户按返回键取消时取消所有进行中的操作，再依次回调各自的监听器
+     */
+    private final DialogInterface.OnCancelListener mInnerCancelListener = new DialogInterface.OnCancelListener() {
+        @Override
+        public void onCancel(DialogInterface dialog) {
+            mShownAt = -1;
+            mHandler.removeCallbacks(mHideRunnable);
+            List<Holder> holders = new ArrayList<Holder>(mHolders.values());
+            mHolders.clear();
+            for (Holder holder : holders) {
+                if (holder.mCancelListener != null) {
+                    holder.mCancelListener.onCancel(dialog);
+                }
+            }
+        }
+    };
+
+    /**
+     * 对话框被外部直接关闭时同步状态，自己关闭和取消时已经先重置过，这里什么都不做
+     */
+    private final DialogInterface.OnDismissListener mInnerDismissListener = new DialogInterface.OnDismissListener() {
+        @Override
+        public void onDismiss(DialogInterface dialog) {
+            syncExternalDismiss();
+        }
+    };
+
+    /**
+     * @param context   界面的Context，对话框需要依附在Activity上
+     */
+    public LoadingController(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * 设置宽限时间，show()之后超过该时间才显示
+     * @param delayMillis   毫秒，0表示立即显示
+     */
+    public void setShowDelay(long delayMillis) {
+        mShowDelay = Math.max(0, delayMillis);
+    }
+
+    /**
+     * 设置最短显示时间，显示后至少保持该时间才隐藏
+     * @param minMillis     毫秒
+     */
+    public void setMinShowTime(long minMillis) {
+        mMinShowTime = Math.max(0, minMillis);
+    }
+
+    /**
+     * 请求显示，使用控制器自身作为token
+     * @param cancelable        是否可以取消
+     * @param cancelListener    取消监听器
+     */
+    public void show(boolean cancelable, DialogInterface.OnCancelListener cancelListener) {
+        show(this, cancelable, cancelListener);
+    }
+
+    /**
+     * 为一个操作请求显示，同一个token重复调用只更新参数，不重复计数
+     * @param token             操作标记，hide(token)时使用同一个对象
+     * @param cancelable        是否可以取消，所有操作都可以取消时对话框才可以取消
+     * @param cancelListener    取消监听器
+     */
+    public void show(Object token, boolean cancelable, DialogInterface.OnCancelListener cancelListener) {
+        // 关闭的回调是异步的，这里先检查一次，避免以为还在显示而直接返回
+        syncExternalDismiss();
+        Holder holder = mHolders.get(token);
+        if (holder == null) {
+            holder = new Holder();
+            mHolders.put(token, holder);
+        }
+        holder.mCancelable = cancelable;
+        holder.mCancelListener = cancelListener;
+        // 等待隐藏期间又要显示，继续显示即可
+        mHandler.removeCallbacks(mHideRunnable);
+        if (mShownAt >= 0) {
+            mDialog.setCancelable(isCancelable());
+            return;
+        }
+        if (mShowPending) {
+            return;
+        }
+        if (mShowDelay == 0) {
+            showNow();
+        } else {
+            mShowPending = true;
+            mHandler.postDelayed(mShowRunnable, mShowDelay);
+        }
+    }
+
+    /**
+     * 请求隐藏控制器自身作为token的操作
+     */
+    public void hide() {
+        hide(this);
+    }
+
+    /**
+     * 结束一个操作，没有其他进行中的操作时才隐藏。宽限期内直接取消显示，已经显示的保证最短显示时间
+     * @param token     show()时使用的操作标记
+     */
+    public void hide(Object token) {
+        syncExternalDismiss();
+        if (mHolders.remove(token) == null) {
+            return;
+        }
+        if (!mHolders.isEmpty()) {
+            if (mShownAt >= 0) {
+                mDialog.setCancelable(isCancelable());
+            }
+            return;
+        }
+        if (mShowPending) {
+            mShowPending = false;
+            mHandler.removeCallbacks(mShowRunnable);
+            return;
+        }
+        if (mShownAt < 0) {
+            return;
+        }
+        long remaining = mShownAt + mMinShowTime - SystemClock.uptimeMillis();
+        mHandler.removeCallbacks(mHideRunnable);
+        if (remaining <= 0) {
+            dismissNow();
+        } else {
+            mHandler.postDelayed(mHideRunnable, remaining);
+        }
+    }
+
+    /**
+     * 是否处于显示状态，包括宽限期
+     * @return  是否显示
+     */
+    public boolean isShowing() {
+        return mShowPending || mShownAt >= 0;
+    }
+
+    /**
+     * 获取进行中的操作数量
+     * @return  操作数量
+     */
+    public int getPendingCount() {
+        return mHolders.size();
+    }
+
+    /**
+     * 获取对话框，还没显示过时为null，可以用来修改提示文本
+     * @return  对话框
+     */
+    public LoadingDialog getDialog() {
+        return mDialog;
+    }
+
+    /**
+     * 获取对话框，还没创建时先创建但不显示，可以在显示之前修改提示文本
+     * @return  对话框
+     */
+    public LoadingDialog obtainDialog() {
+        if (mDialog == null) {
+            mDialog = new LoadingDialog(mContext);
+            mDialog.setOnCancelListener(mInnerCancelListener);
+            mDialog.setOnDismissListener(mInnerDismissListener);
+        }
+        return mDialog;
+    }
+
+    /**
+     * 界面销毁时调用，取消所有等待并关闭对话框
+     */
+    public void release() {
+        mHolders.clear();
+        mShowPending = false;
+        mHandler.removeCallbacks(mShowRunnable);
+        mHandler.removeCallbacks(mHideRunnable);
+        dismissNow();
+    }
+
+    private void showNow() {
+        if (mContext instanceof Activity && ((Activity) mContext).isFinishing()) {
+            return;
+        }
+        obtainDialog().setCancelable(isCancelable());
+        mDialog.show();
+        mShownAt = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * 对话框不经过控制器被关闭（比如直接调用了已废弃的mProgressDialog.dismiss()）时，
+     * 视为所有操作都已结束：清除显示时间、等待中的隐藏和进行中的操作，之后的show()重新显示
+     */
+    private void syncExternalDismiss() {
+        if (mShownAt < 0 || mDialog.isShowing()) {
+            return;
+        }
+        mShownAt = -1;
+        mHandler.removeCallbacks(mHideRunnable);
+        mHolders.clear();
+    }
+
+    private void dismissNow() {
+        mShownAt = -1;
+        if (mDialog != null && mDialog.isShowing()) {
+            mDialog.dismiss();
+        }
+    }
+
+    private boolean isCancelable() {
+        for (Holder holder : mHolders.values()) {
+            if (!holder.mCancelable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一个进行中的操作
+     */
+    private static class Holder {
+
+        boolean mCancelable;
+
+        DialogInterface.OnCancelListener mCancelListener;
+    }
+}
@@ -0,0 +1,118 @@
+package moe.div.mobase.weiget;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.SparseLongArray;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * @author 林墨
+ * @time 20/7/5  16:10
+ * @desc 跟随界面生命周期的主线程Handler，通过软连接持有界面，避免产生内存泄漏。
+ * 界面销毁时调用destroy()，所有等待的消息和Runnable都会被移除，之后发送的直接丢弃。
+ * debounce()和throttle()会替换队列里相同what的消息，而不是继续排队
+ * @param <T>   持有的界面类型
+ */
+public abstract class SafeScheduler<T> extends Handler {
+
+    private final WeakReference<T> mWeakReference;
+
+    /**
+     * throttle()使用的what对应上一次处理的时间
+     */
+    private final SparseLongArray mLastHandled = new SparseLongArray();
+
+    private boolean mDestroyed;
+
+    /**
+     * @param target    持有的界面
+     */
+    public SafeScheduler(T target) {
+        super(Looper.getMainLooper());
+        mWeakReference = new WeakReference<T>(target);
+    }
+
+    @Override
+    public final void handleMessage(Message msg) {
+        T target = mWeakReference.get();
+        if (target == null || mDestroyed) {
+            return;
+        }
+        if (mLastHandled.indexOfKey(msg.what) >= 0) {
+            mLastHandled.put(msg.what, SystemClock.uptimeMillis());
+        }
+        handleMessage(target, msg);
+    }
+
+    /**
+     * 处理消息，界面已经被回收或者销毁时不会调用
+     * @param target    持有的界面
+     * @param msg       Handler消息
+     */
+    protected abstract void handleMessage(T target, Message msg);
+
+    @Override
+    public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        // 销毁之后发送的消息和Runnable都直接丢弃
+        if (mDestroyed) {
+            return false;
+        }
+        return super.sendMessageAtTime(msg, uptimeMillis);
+    }
+
+    /**
+     * 防抖：移除等待中的相同消息，重新计时，连续调用时只在最后一次之后delay毫秒处理一次
+     * @param what          消息what
+     * @param delayMillis   延迟，毫秒
+     * @return  是否加入队列
+     */
+    public boolean debounce(int what, long delayMillis) {
+        removeMessages(what);
+        return sendEmptyMessageDelayed(what, delayMillis);
+    }
+
+    /**
+     * 节流：两次处理之间至少间隔interval毫秒。间隔内的调用合并成一条，在间隔结束时处理，
+     * 保证最后一次调用不会丢失
+     * @param what              消息what
+     * @param intervalMillis    最短间隔，毫秒
+     * @return  是否加入队列，已经有等待中的相同消息时返回false
+     */
+    public boolean throttle(int what, long intervalMillis) {
+        if (hasMessages(what)) {
+            return false;
+        }
+        long now = SystemClock.uptimeMillis();
+        long last = mLastHandled.get(what, Long.MIN_VALUE);
+        if (last == Long.MIN_VALUE) {
+            // 第一次使用时登记，之后在处理时记录时间
+            mLastHandled.put(what, now - intervalMillis);
+            return sendEmptyMessage(what);
+        }
+        long wait = last + intervalMillis - now;
+        if (wait <= 0) {
+            return sendEmptyMessage(what);
+        }
+        return sendEmptyMessageDelayed(what, wait);
+    }
+
+    /**
+     * 界面是否已经销毁
+     * @return  是否销毁
+     */
+    public boolean isDestroyed() {
+        return mDestroyed;
+    }
+
+    /**
+     * 界面销毁时调用，移除所有等待的消息和Runnable
+     */
+    public void destroy() {
+        mDestroyed = true;
+        removeCallbacksAndMessages(null);
+        mLastHandled.clear();
+    }
+}
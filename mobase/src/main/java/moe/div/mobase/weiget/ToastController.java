@@ -0,0 +1,292 @@
+package moe.div.mobase.weiget;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.DrawableRes;
+import moe.div.mobase.R;
+
+/**
+ * @author 林墨
+ * @time 20/7/5  10:40
+ * @desc 吐司的显示控制，每个界面复用同一套吐司和布局，布局只在第一次使用时加载。
+ * 合并时间内重复的相同内容只刷新一次并在末尾显示次数；不同内容之间至少间隔最短间隔，
+ * 间隔内只保留最新的一条，不会在系统里排起长队。只能在主线程使用
+ */
+public class ToastController {
+
+    /**
+     * 默认合并时间，毫秒，和Toast.LENGTH_SHORT的显示时间一致
+     */
+    public static final long DEFAULT_MERGE_WINDOW = 2000;
+
+    /**
+     * 默认最短间隔，毫秒
+     */
+    public static final long DEFAULT_MIN_INTERVAL = 300;
+
+    private static final int TYPE_TEXT = 0;
+    private static final int TYPE_INFO = 1;
+    private static final int TYPE_SUCCEED = 2;
+
+    private final Context mContext;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private long mMergeWindow = DEFAULT_MERGE_WINDOW;
+
+    private long mMinInterval = DEFAULT_MIN_INTERVAL;
+
+    private Toast mTextToast;
+
+    private Toast mInfoToast;
+    private ImageView mInfoImage;
+    private TextView mInfoText;
+    private CharSequence mInfoDefaultText;
+
+    private Toast mSucceedToast;
+    private TextView mSucceedText;
+    private CharSequence mSucceedDefaultText;
+
+    /**
+     * 当前显示的吐司
+     */
+    private Toast mCurrentToast;
+    private int mCurrentType = -1;
+    private int mCurrentRes;
+    private String mCurrentText;
+    private int mCurrentCount;
+    private long mShownAt = -1;
+
+    /**
+     * 等待最短间隔结束的吐司，只保留最新一条
+     */
+    private boolean mPending;
+    private int mPendingType;
+    private int mPendingRes;
+    private String mPendingText;
+    private int mPendingCount;
+
+    /**
+     * 界面是否已经销毁
+     */
+    private boolean mReleased;
+
+    private final Runnable mPendingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
+
+    /**
+     * @param context   界面的Context，用来加载吐司布局
+     */
+    public ToastController(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * 设置合并时间，该时间内重复的相同内容合并成一条
+     * @param windowMillis  毫秒，0表示不合并
+     */
+    public void setMergeWindow(long windowMillis) {
+        mMergeWindow = Math.max(0, windowMillis);
+    }
+
+    /**
+     * 设置不同内容之间的最短间隔
+     * @param intervalMillis    毫秒，0表示不限制
+     */
+    public void setMinInterval(long intervalMillis) {
+        mMinInterval = Math.max(0, intervalMillis);
+    }
+
+    /**
+     * 显示系统样式的吐司
+     * @param text  显示文本
+     */
+    public void showText(String text) {
+        enqueue(TYPE_TEXT, 0, text);
+    }
+
+    /**
+     * 显示带图片的提示吐司，对应toast_info_layout
+     * @param resId     图片资源ID
+     * @param text      显示文本，为null时使用布局里的文本
+     */
+    public void showInfo(@DrawableRes int resId, String text) {
+        enqueue(TYPE_INFO, resId, text);
+    }
+
+    /**
+     * 显示成功吐司，对应toast_vote_succeed_layout
+     * @param text      显示文本，为null时使用布局里的文本
+     */
+    public void showSucceed(String text) {
+        enqueue(TYPE_SUCCEED, 0, text);
+    }
+
+    /**
+     * 获取最近显示的吐司
+     * @return  吐司，还没显示过时为null
+     */
+    public Toast getToast() {
+        return mCurrentToast;
+    }
+
+    /**
+     * 获取成功吐司的提示文本控件，第一次调用时加载布局
+     * @return  文本控件，界面销毁后为null
+     */
+    public TextView getSucceedHint() {
+        if (!mReleased) {
+            obtainToast(TYPE_SUCCEED);
+        }
+        return mSucceedText;
+    }
+
+    /**
+     * 界面销毁时调用，丢弃还在等待的吐司并取消正在显示的吐司，之后的显示请求直接忽略。
+     * 自定义吐司的布局用界面的Context加载，界面销毁后再显示会持有已经销毁的界面
+     */
+    public void release() {
+        mReleased = true;
+        mHandler.removeCallbacks(mPendingRunnable);
+        mPending = false;
+        mPendingText = null;
+        if (mCurrentToast != null) {
+            mCurrentToast.cancel();
+            mCurrentToast = null;
+        }
+        mInfoToast = null;
+        mInfoImage = null;
+        mInfoText = null;
+        mSucceedToast = null;
+        mSucceedText = null;
+    }
+
+    private void enqueue(int type, int resId, String text) {
+        if (mReleased) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        // 和正在显示的相同，刷新次数即可
+        if (!mPending && isSame(mCurrentType, mCurrentRes, mCurrentText, type, resId, text)
+                && mShownAt >= 0 && now - mShownAt < mMergeWindow) {
+            mCurrentCount++;
+            mShownAt = now;
+            display();
+            return;
+        }
+        // 和等待中的相同，只累加次数
+        if (mPending && isSame(mPendingType, mPendingRes, mPendingText, type, resId, text)) {
+            mPendingCount++;
+            return;
+        }
+        mPendingType = type;
+        mPendingRes = resId;
+        mPendingText = text;
+        mPendingCount = 1;
+        long wait = mShownAt < 0 ? 0 : mShownAt + mMinInterval - now;
+        if (wait <= 0) {
+            mHandler.removeCallbacks(mPendingRunnable);
+            flushPending();
+        } else if (!mPending) {
+            mPending = true;
+            mHandler.postDelayed(mPendingRunnable, wait);
+        }
+    }
+
+    private void flushPending() {
+        mPending = false;
+        mCurrentType = mPendingType;
+        mCurrentRes = mPendingRes;
+        mCurrentText = mPendingText;
+        mCurrentCount = mPendingCount;
+        mPendingText = null;
+        mShownAt = SystemClock.uptimeMillis();
+        display();
+    }
+
+    private void display() {
+        Toast toast = obtainToast(mCurrentType);
+        if (mCurrentToast != null && mCurrentToast != toast) {
+            mCurrentToast.cancel();
+        }
+        mCurrentToast = toast;
+        switch (mCurrentType) {
+            case TYPE_INFO:
+                mInfoImage.setImageResource(mCurrentRes);
+                mInfoText.setText(withCount(mCurrentText, mInfoDefaultText));
+                break;
+            case TYPE_SUCCEED:
+                mSucceedText.setText(withCount(mCurrentText, mSucceedDefaultText));
+                break;
+            default:
+                toast.setText(withCount(mCurrentText, null));
+                break;
+        }
+        // 同一个吐司正在显示时再次show()只会刷新内容和时长
+        toast.show();
+    }
+
+    private Toast obtainToast(int type) {
+        switch (type) {
+            case TYPE_INFO:
+                if (mInfoToast == null) {
+                    View view = LayoutInflater.from(mContext).inflate(R.layout.toast_info_layout, null);
+                    mInfoImage = (ImageView) view.findViewById(R.id.hint_image);
+                    mInfoText = (TextView) view.findViewById(R.id.hint_text);
+                    mInfoDefaultText = mInfoText.getText();
+                    mInfoToast = newCustomToast(view);
+                }
+                return mInfoToast;
+            case TYPE_SUCCEED:
+                if (mSucceedToast == null) {
+                    View view = LayoutInflater.from(mContext).inflate(R.layout.toast_vote_succeed_layout, null);
+                    mSucceedText = (TextView) view.findViewById(R.id.hint_text);
+                    mSucceedDefaultText = mSucceedText.getText();
+                    mSucceedToast = newCustomToast(view);
+                }
+                return mSucceedToast;
+            default:
+                if (mTextToast == null) {
+                    mTextToast = Toast.makeText(mContext.getApplicationContext(), "", Toast.LENGTH_SHORT);
+                }
+                return mTextToast;
+        }
+    }
+
+    private Toast newCustomToast(View view) {
+        Toast toast = new Toast(mContext.getApplicationContext());
+        toast.setDuration(Toast.LENGTH_SHORT);
+        toast.setGravity(Gravity.CENTER, 0, 0);
+        toast.setView(view);
+        return toast;
+    }
+
+    private CharSequence withCount(String text, CharSequence defaultText) {
+        CharSequence content = text != null ? text : defaultText;
+        if (mCurrentCount <= 1) {
+            return content;
+        }
+        return (content == null ? "" : content) + " (" + mCurrentCount + ")";
+    }
+
+    private static boolean isSame(int type, int resId, String text,
+                                  int otherType, int otherRes, String otherText) {
+        if (type != otherType || resId != otherRes) {
+            return false;
+        }
+        return text == null ? otherText == null : text.equals(otherText);
+    }
+}
@@ -0,0 +1,176 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author 林墨
+ * @time 20/7/13  10:30
+ * @desc 后台过滤：关键字变长时只在上一次的结果里继续过滤，新的关键字取消还没完成的过滤，
+ * 替换原始数据时按唯一键比较新旧显示的数据，发出局部通知
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class AdapterFilterTest {
+
+    private TestAdapter mAdapter;
+
+    private CountingFilter mFilter;
+
+    private ConcurrentDataSourceTest.QueuedExecutor mExecutor;
+
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter();
+        mFilter = new CountingFilter();
+        mExecutor = new ConcurrentDataSourceTest.QueuedExecutor();
+        mAdapter.setDiffExecutor(mExecutor);
+        mAdapter.setItemFilter(mFilter);
+        mAdapter.setSourceData(Arrays.asList("apple", "banana", "apricot", "cherry", "avocado"));
+        flush();
+        mObserver = new RecordingObserver();
+        mAdapter.registerAdapterDataObserver(mObserver);
+    }
+
+    @Test
+    public void longerQueryFiltersPreviousResult() {
+        mAdapter.filter("a");
+        flush();
+        assertEquals("apple banana apricot avocado", texts());
+        assertEquals(5, mFilter.mCalls);
+        assertEquals(Collections.singletonList("remove 3,1"), mObserver.mEvents);
+
+        // 只检查上一次留下的4项
+        mFilter.mCalls = 0;
+        mObserver.mEvents.clear();
+        mAdapter.filter("ap");
+        flush();
+        assertEquals("apple apricot", texts());
+        assertEquals(4, mFilter.mCalls);
+        assertEquals(Arrays.asList("remove 1,1", "remove 2,1"), mObserver.mEvents);
+
+        // 不是在上一次的关键字后面追加，重新过滤全部原始数据
+        mFilter.mCalls = 0;
+        mAdapter.filter("an");
+        flush();
+        assertEquals("banana", texts());
+        assertEquals(5, mFilter.mCalls);
+    }
+
+    @Test
+    public void newQueryCancelsPendingFilter() {
+        mAdapter.filter("a");
+        mAdapter.filter("ch");
+        flush();
+
+        // 第一次过滤开始前已经被取消，没有检查任何一项，也没有发出通知
+        assertEquals(5, mFilter.mCalls);
+        assertEquals("cherry", texts());
+        assertEquals("ch", mAdapter.getFilterQuery());
+        assertEquals(Arrays.asList("remove 0,3", "remove 1,1"), mObserver.mEvents);
+
+        // 结果回到主线程之前被取消的也不会应用
+        mObserver.mEvents.clear();
+        mAdapter.filter("");
+        mExecutor.runAll();
+        mAdapter.setItemFilter(null);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals("cherry", texts());
+        assertEquals(Collections.<String>emptyList(), mObserver.mEvents);
+    }
+
+    @Test
+    public void replacedSourceDispatchesDiffByKey() {
+        // 稳定ID只能在注册观察者之前开启
+        mAdapter.unregisterAdapterDataObserver(mObserver);
+        mAdapter.setKeyExtractor(new MoBaseRecyclerAdapter.KeyExtractor<String>() {
+            @Override
+            public long getKey(String item) {
+                return item.hashCode();
+            }
+        });
+        mAdapter.registerAdapterDataObserver(mObserver);
+        mAdapter.filter("a");
+        flush();
+        mObserver.mEvents.clear();
+
+        mAdapter.setSourceData(Arrays.asList("apple", "apricot", "cherry", "avocado", "almond"));
+        flush();
+        assertEquals("apple apricot avocado almond", texts());
+        assertEquals(Arrays.asList("insert 4,1", "remove 1,1"), mObserver.mEvents);
+    }
+
+    @Test
+    public void replacedSourceWithoutKeysRefreshesAll() {
+        mAdapter.setSourceData(Arrays.asList("apple", "cherry"));
+        flush();
+        assertEquals("apple cherry", texts());
+        assertEquals(Collections.singletonList("changed"), mObserver.mEvents);
+    }
+
+    private void flush() {
+        // 先跑完后台过滤，再处理切回主线程的结果
+        mExecutor.runAll();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private String texts() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mAdapter.getItemCount(); i++) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(mAdapter.getItem(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按包含关键字过滤，记录检查的次数
+     */
+    static final class CountingFilter implements MoBaseRecyclerAdapter.ItemFilter<String> {
+
+        int mCalls;
+
+        @Override
+        public boolean accept(String item, String query) {
+            mCalls++;
+            return item.contains(query);
+        }
+    }
+
+    static class TestAdapter extends MoBaseRecyclerAdapter<String, TestAdapter.Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
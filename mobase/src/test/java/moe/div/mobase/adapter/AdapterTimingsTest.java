@@ -0,0 +1,67 @@
+package moe.div.mobase.adapter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  18:20
+ * @desc 首次布局、首次滑动阶段：只统计阶段内的创建、绑定，每个阶段只记录一次，
+ * 结束时带上已经预创建的数量，方便对比开启预创建前后
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class AdapterTimingsTest {
+
+    private static final int VIEW_TYPE = 1;
+
+    @Test
+    public void phaseCountsOnlyWorkInsideIt() {
+        AdapterTimings timings = new AdapterTimings();
+        record(timings, AdapterTimings.KIND_CREATE);
+        assertNull(timings.getPhase(AdapterTimings.PHASE_STARTUP));
+
+        timings.onPrewarmed(4);
+        timings.beginPhase(AdapterTimings.PHASE_STARTUP);
+        record(timings, AdapterTimings.KIND_CREATE);
+        record(timings, AdapterTimings.KIND_BIND);
+        record(timings, AdapterTimings.KIND_BIND);
+        timings.endPhase(AdapterTimings.PHASE_STARTUP);
+        record(timings, AdapterTimings.KIND_CREATE);
+
+        AdapterTimings.PhaseSnapshot startup = timings.getPhase(AdapterTimings.PHASE_STARTUP);
+        assertEquals(1, startup.getCreateCount());
+        assertEquals(2, startup.getBindCount());
+        assertEquals(4, startup.getPrewarmedHolders());
+        assertTrue(startup.getDuration() >= startup.getCreateTime() + startup.getBindTime());
+        assertNull(timings.getPhase(AdapterTimings.PHASE_FIRST_SCROLL));
+    }
+
+    @Test
+    public void phaseIsRecordedOnce() {
+        AdapterTimings timings = new AdapterTimings();
+        timings.beginPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+        record(timings, AdapterTimings.KIND_CREATE);
+        timings.endPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+
+        // 第二次拖动不再开始新的阶段
+        timings.beginPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+        record(timings, AdapterTimings.KIND_CREATE);
+        timings.endPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+        timings.reset();
+
+        AdapterTimings.PhaseSnapshot scroll = timings.getPhase(AdapterTimings.PHASE_FIRST_SCROLL);
+        assertEquals(1, scroll.getCreateCount());
+        assertEquals(0, scroll.getPrewarmedHolders());
+    }
+
+    private static void record(AdapterTimings timings, int kind) {
+        timings.end(kind, VIEW_TYPE, timings.begin(kind, VIEW_TYPE));
+    }
+}
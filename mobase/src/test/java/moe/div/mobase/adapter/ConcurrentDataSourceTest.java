@@ -0,0 +1,217 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  10:10
+ * @desc 跨线程数据源：同一帧内的修改按提交顺序生效；差异计算期间的修改留在队列里，
+ * 不会重新提交差异计算，结果应用之后一次性重放
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ConcurrentDataSourceTest {
+
+    private TestAdapter mAdapter;
+
+    private ConcurrentDataSource<Item> mSource;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter();
+        mAdapter.setKeyExtractor(new MoBaseRecyclerAdapter.KeyExtractor<Item>() {
+            @Override
+            public long getKey(Item item) {
+                return item.key;
+            }
+        });
+        mSource = new ConcurrentDataSource<Item>(mAdapter);
+    }
+
+    @Test
+    public void opsApplyInSubmissionOrder() {
+        mSource.setAll(items("a1", "b2"));
+        mSource.add(new Item("c3"));
+        mSource.removeByKey(1);
+        mSource.updateByKey(3, new Item("C3"), null);
+        flush();
+        assertEquals("b2 C3", texts());
+
+        // 替换之后的修改作用在新数据上，之前的被替换掉
+        mSource.add(new Item("d4"));
+        mSource.setAll(items("x8", "y9"));
+        mSource.add(new Item("z7"));
+        mSource.removeByKey(8);
+        flush();
+        assertEquals("y9 z7", texts());
+    }
+
+    @Test
+    public void removeFindsItemAddedInSameFrame() {
+        mSource.setAll(items("a1"));
+        flush();
+        mSource.add(new Item("b2"));
+        mSource.add(new Item("c3"));
+        mSource.removeByKey(2);
+        mSource.updateByKey(1, new Item("A1"), null);
+        flush();
+        assertEquals("A1 c3", texts());
+    }
+
+    @Test
+    public void diffInFlightQueuesOpsUntilResultLands() {
+        QueuedExecutor executor = new QueuedExecutor();
+        mAdapter.setDiffCallback(ITEM_DIFF);
+        mAdapter.setDiffExecutor(executor);
+        mAdapter.setData(items("a1", "b2", "c3"));
+        assertEquals("a1 b2 c3", texts());
+
+        mSource.setAll(items("a1", "b2", "c3", "d4"));
+        flush();
+        assertEquals(1, executor.mTasks.size());
+
+        // 差异计算比一帧长，期间每帧都有新数据进来
+        for (int i = 5; i < 9; i++) {
+            mSource.add(new Item("e" + i));
+            flush();
+        }
+        mSource.removeByKey(2);
+        mSource.updateByKey(5, new Item("E5"), null);
+        flush();
+        assertEquals("diff was restarted", 1, executor.mTasks.size());
+        assertEquals("a1 b2 c3", texts());
+
+        executor.runAll();
+        flush();
+        assertEquals("a1 c3 d4 E5 e6 e7 e8", texts());
+        assertEquals(0, executor.mTasks.size());
+    }
+
+    @Test
+    public void setAddRemoveInOneFrameWithDiff() {
+        QueuedExecutor executor = new QueuedExecutor();
+        mAdapter.setDiffCallback(ITEM_DIFF);
+        mAdapter.setDiffExecutor(executor);
+        mAdapter.setData(items("a1", "b2"));
+
+        mSource.setAll(items("a1", "b2", "c3"));
+        mSource.setAll(items("b2", "c3"));
+        mSource.add(new Item("d4"));
+        mSource.removeByKey(3);
+        flush();
+        // 连续的替换只提交最后一次
+        assertEquals(1, executor.mTasks.size());
+
+        executor.runAll();
+        flush();
+        assertEquals("b2 d4", texts());
+    }
+
+    private void flush() {
+        // 跑完主线程消息和下一帧的回调
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private String texts() {
+        StringBuilder builder = new StringBuilder();
+        for (Item item : mAdapter.getData()) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(item.text);
+        }
+        return builder.toString();
+    }
+
+    private static List<Item> items(String... texts) {
+        List<Item> list = new ArrayList<Item>(texts.length);
+        for (String text : texts) {
+            list.add(new Item(text));
+        }
+        return list;
+    }
+
+    private static final DiffUtil.ItemCallback<Item> ITEM_DIFF = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(Item oldItem, Item newItem) {
+            return oldItem.key == newItem.key;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.text.equals(newItem.text);
+        }
+    };
+
+    /**
+     * 数据，文本末尾的数字是唯一键
+     */
+    static final class Item {
+
+        final long key;
+        final String text;
+
+        Item(String text) {
+            this.text = text;
+            this.key = Long.parseLong(text.substring(1));
+        }
+    }
+
+    /**
+     * 先攒着任务，测试里手动执行，模拟比一帧更长的差异计算
+     */
+    static final class QueuedExecutor implements Executor {
+
+        final List<Runnable> mTasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> tasks = new ArrayList<Runnable>(mTasks);
+            mTasks.clear();
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        }
+    }
+
+    static class TestAdapter extends MoBaseRecyclerAdapter<Item, TestAdapter.Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
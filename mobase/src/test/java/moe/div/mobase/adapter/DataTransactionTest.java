@@ -0,0 +1,216 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  16:40
+ * @desc 数据修改事务：按原索引记录的插入、删除、替换在提交时累加偏移并合并通知；
+ * 提交后唯一键索引只更新受影响的部分，查找结果和实际位置一致；差异计算期间不能开启事务
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DataTransactionTest {
+
+    private static final int RANDOM_ROUNDS = 200;
+
+    private static final long SEED = 20200712L;
+
+    private TestAdapter mAdapter;
+
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter();
+        mAdapter.setKeyExtractor(new MoBaseRecyclerAdapter.KeyExtractor<String>() {
+            @Override
+            public long getKey(String item) {
+                return Long.parseLong(item.substring(1));
+            }
+        });
+        mAdapter.setData(new ArrayList<String>(items("a", 0, 10)));
+        mObserver = new RecordingObserver();
+        mAdapter.registerAdapterDataObserver(mObserver);
+    }
+
+    @Test
+    public void offsetsAccumulateAndAdjacentRangesMerge() {
+        mAdapter.beginTransaction()
+                .addAll(0, Arrays.asList("b13", "b14"))
+                .remove(2)
+                .remove(3)
+                .add(2, "b10")
+                .update(5, "c5", "p")
+                .add(5, "b11")
+                .add("b12")
+                .commit();
+
+        assertEquals("b13 b14 a0 a1 b10 a4 b11 c5 a6 a7 a8 a9 b12", texts());
+        // 插在某个位置的数据排在该位置原来的数据之前，所以b10先于a2、a3的删除
+        assertEquals(Arrays.asList("insert 0,2", "insert 4,1", "remove 5,2", "insert 6,1",
+                "change 7,1 p", "insert 12,1"), mObserver.mEvents);
+    }
+
+    @Test
+    public void manyEditsRebuildTheList() {
+        // 修改位置靠前且数量多，移动量超过整表重建，走重建分支
+        mAdapter.getPositionByKey(0);
+        DataTransaction<String> transaction = mAdapter.beginTransaction();
+        for (int position = 0; position < 10; position += 2) {
+            transaction.remove(position);
+            transaction.add(position + 1, "b" + (20 + position));
+        }
+        transaction.commit();
+
+        assertEquals(4, mAdapter.getPositionByKey(24));
+        assertEquals(RecyclerView.NO_POSITION, mAdapter.getPositionByKey(4));
+        assertEquals("b20 a1 b22 a3 b24 a5 b26 a7 b28 a9", texts());
+        assertEquals(Arrays.asList("remove 0,1", "insert 0,1", "remove 2,1", "insert 2,1", "remove 4,1",
+                "insert 4,1", "remove 6,1", "insert 6,1", "remove 8,1", "insert 8,1"), mObserver.mEvents);
+    }
+
+    @Test
+    public void keyIndexFollowsCommits() {
+        Random random = new Random(SEED);
+        long nextKey = 100;
+        for (int round = 0; round < RANDOM_ROUNDS; round++) {
+            // 隔一轮才查一次，过期的索引整表重建，最新的索引只更新受影响的部分
+            if (round % 3 != 0) {
+                mAdapter.getPositionByKey(0);
+            }
+            List<String> before = new ArrayList<String>(mAdapter.getData());
+            DataTransaction<String> transaction = mAdapter.beginTransaction();
+            int size = before.size();
+            int ops = 1 + random.nextInt(4);
+            for (int k = 0; k < ops; k++) {
+                int choice = random.nextInt(4);
+                if (choice == 0 || size == 0) {
+                    transaction.add(random.nextInt(size + 1), "n" + nextKey++);
+                } else if (choice == 1) {
+                    transaction.remove(random.nextInt(size));
+                } else if (choice == 2) {
+                    int position = random.nextInt(size);
+                    transaction.update(position, "u" + before.get(position).substring(1), null);
+                } else {
+                    transaction.add("n" + nextKey++);
+                }
+            }
+            transaction.commit();
+            assertKeysMatch("round " + round, before);
+        }
+    }
+
+    @Test
+    public void transactionRejectedWhileDiffPending() {
+        ConcurrentDataSourceTest.QueuedExecutor executor = new ConcurrentDataSourceTest.QueuedExecutor();
+        mAdapter.setDiffCallback(new DiffUtil.ItemCallback<String>() {
+            @Override
+            public boolean areItemsTheSame(String oldItem, String newItem) {
+                return oldItem.substring(1).equals(newItem.substring(1));
+            }
+
+            @Override
+            public boolean areContentsTheSame(String oldItem, String newItem) {
+                return oldItem.equals(newItem);
+            }
+        });
+        mAdapter.setDiffExecutor(executor);
+        mAdapter.setData(items("a", 0, 12));
+        try {
+            mAdapter.beginTransaction();
+            fail("transaction would be lost when the diff result lands");
+        } catch (IllegalStateException expected) {
+            // 差异结果应用时会用计算时的新数据覆盖
+        }
+
+        executor.runAll();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        mAdapter.beginTransaction().remove(0).commit();
+        assertEquals(11, mAdapter.getData().size());
+        assertEquals(0, mAdapter.getPositionByKey(1));
+    }
+
+    /**
+     * 当前数据里每一项都能按唯一键找到自己的位置，已经删掉的唯一键找不到
+     */
+    private void assertKeysMatch(String message, List<String> before) {
+        List<String> data = mAdapter.getData();
+        for (int position = 0; position < data.size(); position++) {
+            long key = Long.parseLong(data.get(position).substring(1));
+            assertEquals(message, position, mAdapter.getPositionByKey(key));
+        }
+        for (String item : before) {
+            long key = Long.parseLong(item.substring(1));
+            if (!containsKey(data, key)) {
+                assertEquals(message, RecyclerView.NO_POSITION, mAdapter.getPositionByKey(key));
+            }
+        }
+    }
+
+    private static boolean containsKey(List<String> data, long key) {
+        for (String item : data) {
+            if (Long.parseLong(item.substring(1)) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String texts() {
+        StringBuilder builder = new StringBuilder();
+        for (String item : mAdapter.getData()) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(item);
+        }
+        return builder.toString();
+    }
+
+    private static List<String> items(String prefix, int from, int to) {
+        List<String> list = new ArrayList<String>(to - from);
+        for (int i = from; i < to; i++) {
+            list.add(prefix + i);
+        }
+        return list;
+    }
+
+    static class TestAdapter extends MoBaseRecyclerAdapter<String, TestAdapter.Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
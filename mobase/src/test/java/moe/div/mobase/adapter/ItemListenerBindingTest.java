@@ -0,0 +1,171 @@
+package moe.div.mobase.adapter;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import androidx.recyclerview.widget.RecyclerView;
+import moe.div.mobase.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * @author 林墨
+ * @time 20/7/11  10:20
+ * @desc 绑定路径不创建监听器：同一个ViewHolder重复绑定时监听器和TAG保持不变，所有ViewHolder共用一个分发器，
+ * 共享缓存池里别的适配器创建的ViewHolder换成自己的分发器，重复绑定的平均分配不超过预算
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ItemListenerBindingTest {
+
+    /**
+     * 预热的绑定次数，JIT完成之后再统计
+     */
+    private static final int WARMUP_BINDS = 2000;
+
+    private static final int MEASURED_BINDS = 20000;
+
+    /**
+     * 每次绑定平均分配的内存预算，字节。挂监听器只在第一次绑定时发生，之后的绑定不应该分配，
+     * 留出的余量远小于一个监听器对象，每次绑定都创建监听器时一定超出
+     */
+    private static final long BIND_ALLOCATION_BUDGET = 8;
+
+    private RecyclerView mParent;
+
+    private TestAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        mParent = new RecyclerView(context);
+        mAdapter = new TestAdapter();
+        mAdapter.setData(Arrays.asList("a", "b", "c"));
+    }
+
+    @Test
+    public void rebindKeepsSameListenersAndTag() {
+        TestAdapter.Holder holder = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        mAdapter.bindViewHolder(holder, 0);
+        View.OnClickListener click = shadowOf(holder.itemView).getOnClickListener();
+        View.OnLongClickListener longClick = shadowOf(holder.itemView).getOnLongClickListener();
+        assertNotNull(click);
+        assertNotNull(longClick);
+        assertSame(holder, holder.itemView.getTag(R.id.mo_base_view_holder));
+
+        for (int i = 0; i < 10; i++) {
+            mAdapter.bindViewHolder(holder, i % 3);
+            assertSame(click, shadowOf(holder.itemView).getOnClickListener());
+            assertSame(longClick, shadowOf(holder.itemView).getOnLongClickListener());
+            assertSame(holder, holder.itemView.getTag(R.id.mo_base_view_holder));
+        }
+        assertEquals(11, mAdapter.mBindCount);
+    }
+
+    @Test
+    public void holdersShareOneDispatcher() {
+        TestAdapter.Holder first = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        TestAdapter.Holder second = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        mAdapter.bindViewHolder(first, 0);
+        mAdapter.bindViewHolder(second, 1);
+        assertSame(shadowOf(first.itemView).getOnClickListener(),
+                shadowOf(second.itemView).getOnClickListener());
+        assertSame(shadowOf(first.itemView).getOnLongClickListener(),
+                shadowOf(second.itemView).getOnLongClickListener());
+    }
+
+    @Test
+    public void payloadBindKeepsSameListeners() {
+        TestAdapter.Holder holder = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        mAdapter.bindViewHolder(holder, 0);
+        View.OnClickListener click = shadowOf(holder.itemView).getOnClickListener();
+        mAdapter.onBindViewHolder(holder, 0, Arrays.<Object>asList("payload"));
+        assertSame(click, shadowOf(holder.itemView).getOnClickListener());
+        assertSame(holder, holder.itemView.getTag(R.id.mo_base_view_holder));
+    }
+
+    @Test
+    public void holderFromSharedPoolGetsOwnDispatcher() {
+        TestAdapter other = new TestAdapter();
+        other.setData(Arrays.asList("x"));
+        TestAdapter.Holder holder = other.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        other.bindViewHolder(holder, 0);
+        View.OnClickListener otherClick = shadowOf(holder.itemView).getOnClickListener();
+
+        // 共享缓存池里的ViewHolder被另一个适配器取出来绑定
+        mAdapter.bindViewHolder(holder, 0);
+        TestAdapter.Holder own = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        mAdapter.bindViewHolder(own, 1);
+        assertNotSame(otherClick, shadowOf(holder.itemView).getOnClickListener());
+        assertSame(shadowOf(own.itemView).getOnClickListener(), shadowOf(holder.itemView).getOnClickListener());
+        assertSame(shadowOf(own.itemView).getOnLongClickListener(),
+                shadowOf(holder.itemView).getOnLongClickListener());
+    }
+
+    @Test
+    public void rebindAllocationStaysWithinBudget() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation counting not supported",
+                bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        TestAdapter.Holder holder = mAdapter.createViewHolder(mParent, MoBaseRecyclerAdapter.TYPE_COMMON_VIEW);
+        for (int i = 0; i < WARMUP_BINDS; i++) {
+            mAdapter.onBindViewHolder(holder, i % 3);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_BINDS; i++) {
+            mAdapter.onBindViewHolder(holder, i % 3);
+        }
+        long perBind = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_BINDS;
+
+        assertEquals(WARMUP_BINDS + MEASURED_BINDS, mAdapter.mBindCount);
+        assertTrue("allocated " + perBind + " bytes per bind, budget " + BIND_ALLOCATION_BUDGET,
+                perBind <= BIND_ALLOCATION_BUDGET);
+    }
+
+    /**
+     * 只记录绑定次数的适配器
+     */
+    static class TestAdapter extends MoBaseRecyclerAdapter<String, TestAdapter.Holder> {
+
+        int mBindCount;
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+            mBindCount++;
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package moe.div.mobase.adapter;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  16:10
+ * @desc 唯一键索引：重复的唯一键保留先放入的索引，删除后同一条探测链上的项仍然查得到，
+ * 随机放入、删除、扩容之后和HashMap对照
+ */
+public class KeyIndexTest {
+
+    private static final int RANDOM_OPS = 20000;
+
+    private static final long SEED = 20200712L;
+
+    @Test
+    public void duplicateKeepsFirstAndRemoveMatchesPosition() {
+        KeyIndex index = new KeyIndex();
+        index.reset(4);
+        index.put(7, 0);
+        index.put(7, 3);
+        assertEquals(0, index.get(7));
+
+        // 后放入的重复项没有记录，删除它不影响先放入的
+        index.remove(7, 3);
+        assertEquals(0, index.get(7));
+        index.remove(7, 0);
+        assertEquals(-1, index.get(7));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removeKeepsCollidingKeysReachable() {
+        KeyIndex index = new KeyIndex();
+        index.reset(0);
+        // 16个槽位里放8个，装载率一半，探测链很长；依次删掉每一个再检查剩下的
+        for (int k = 0; k < 8; k++) {
+            index.put(k * 16L, k);
+        }
+        for (int removed = 0; removed < 8; removed++) {
+            index.remove(removed * 16L, removed);
+            assertEquals(-1, index.get(removed * 16L));
+            for (int k = removed + 1; k < 8; k++) {
+                assertEquals(k, index.get(k * 16L));
+            }
+        }
+    }
+
+    @Test
+    public void matchesHashMapAcrossGrowth() {
+        Random random = new Random(SEED);
+        KeyIndex index = new KeyIndex();
+        index.reset(0);
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < RANDOM_OPS; i++) {
+            long key = random.nextInt(4096) - 2048L;
+            if (random.nextInt(3) == 0) {
+                Integer position = expected.get(key);
+                if (position != null) {
+                    index.remove(key, position);
+                    expected.remove(key);
+                }
+            } else {
+                int position = random.nextInt(100000);
+                index.put(key, position);
+                if (!expected.containsKey(key)) {
+                    expected.put(key, position);
+                }
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (long key = -2048; key < 2048; key++) {
+            Integer position = expected.get(key);
+            assertEquals("key " + key, position == null ? -1 : position, index.get(key));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  11:20
+ * @desc 分组列表：平铺索引和数据索引的换算，继承来的追加、加载更多、事务按分组生效并发出平铺索引的通知
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class MoSectionedAdapterTest {
+
+    private TestAdapter mAdapter;
+
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter();
+        mAdapter.setKeyExtractor(new MoBaseRecyclerAdapter.KeyExtractor<String>() {
+            @Override
+            public long getKey(String item) {
+                return item.hashCode();
+            }
+        });
+        // 头A a1 a2 | 头B | 头C c1
+        mAdapter.setSections(Arrays.asList("A", "B", "C"), Arrays.asList(
+                Arrays.asList("a1", "a2"), Collections.<String>emptyList(), Arrays.asList("c1")));
+        mObserver = new RecordingObserver();
+        mAdapter.registerAdapterDataObserver(mObserver);
+    }
+
+    @Test
+    public void mapsFlatPositionsToItems() {
+        assertEquals("A | a1 a2 | B | C | c1", layout());
+        assertNull(mAdapter.getItem(3));
+        assertEquals("c1", mAdapter.getItem(5));
+        assertEquals(MoSectionedAdapter.TYPE_SECTION_HEADER, mAdapter.getItemViewType(4));
+        assertEquals(MoBaseRecyclerAdapter.TYPE_COMMON_VIEW, mAdapter.getItemViewType(2));
+        assertEquals(2, mAdapter.getPositionByKey("a2".hashCode()));
+        assertEquals(5, mAdapter.getPositionByKey("c1".hashCode()));
+        assertEquals(RecyclerView.NO_POSITION, mAdapter.getPositionByKey("x".hashCode()));
+    }
+
+    @Test
+    public void deleteAndUpdateUseFlatPositions() {
+        mAdapter.deleteItem(1);
+        mAdapter.updateItem(4, "C1", "p");
+
+        assertEquals("A | a2 | B | C | C1", layout());
+        assertEquals(Arrays.asList("remove 1,1", "change 4,1 p"), mObserver.mEvents);
+    }
+
+    @Test
+    public void addAndLoadMoreAppendToLastSection() {
+        mAdapter.addData("c2");
+        mAdapter.addData(Arrays.asList("c3", "c4"));
+        assertEquals("A | a1 a2 | B | C | c1 c2 c3 c4", layout());
+
+        mObserver.mEvents.clear();
+        mAdapter.loadMoreComplete(Arrays.asList("c5", "c6"));
+        assertEquals("A | a1 a2 | B | C | c1 c2 c3 c4 c5 c6", layout());
+        assertEquals(Collections.singletonList("insert 9,2"), mObserver.mEvents);
+    }
+
+    @Test
+    public void setDataPutsItemsIntoOneSection() {
+        mAdapter.setData(Arrays.asList("x1", "x2"));
+        assertEquals("A | x1 x2", layout());
+
+        // 没有分组时建一个头部为null的组
+        TestAdapter empty = new TestAdapter();
+        empty.loadMoreComplete(Arrays.asList("y1", "y2"));
+        assertEquals("null | y1 y2", layout(empty));
+    }
+
+    @Test
+    public void transactionUsesFlatPositions() {
+        mAdapter.beginTransaction()
+                .remove(1)
+                // 插在头C之前，放进B的末尾
+                .add(4, "b1")
+                .update(5, "C1", "p")
+                .add("c2")
+                .commit();
+
+        assertEquals("A | a2 | B | b1 | C | C1 c2", layout());
+        assertEquals(Arrays.asList("remove 1,1", "insert 3,1", "change 5,1 p", "insert 6,1"),
+                mObserver.mEvents);
+        assertEquals(3, mAdapter.getPositionByKey("b1".hashCode()));
+    }
+
+    @Test
+    public void transactionRejectsHeaderEdits() {
+        DataTransaction<String> transaction = mAdapter.beginTransaction();
+        try {
+            transaction.remove(3);
+            fail("removed a header");
+        } catch (IllegalArgumentException expected) {
+            // 头部不能删除
+        }
+        try {
+            transaction.add(0, "z");
+            fail("inserted before the first header");
+        } catch (IllegalArgumentException expected) {
+            // 第一组头部之前没有组
+        }
+        transaction.commit();
+        assertTrue(mObserver.mEvents.isEmpty());
+    }
+
+    private String layout() {
+        return layout(mAdapter);
+    }
+
+    /**
+     * 按平铺索引拼出头部和子项，组之间用竖线分开
+     */
+    private static String layout(TestAdapter adapter) {
+        List<String> parts = new ArrayList<String>();
+        StringBuilder items = new StringBuilder();
+        for (int position = 0; position < adapter.getItemCount(); position++) {
+            if (adapter.isSectionHeader(position)) {
+                if (items.length() > 0) {
+                    parts.add(items.toString());
+                    items.setLength(0);
+                }
+                parts.add(String.valueOf(adapter.getSectionHeader(adapter.getSectionForPosition(position))));
+            } else {
+                if (items.length() > 0) {
+                    items.append(' ');
+                }
+                items.append(adapter.getItem(position));
+            }
+        }
+        if (items.length() > 0) {
+            parts.add(items.toString());
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts) {
+            if (builder.length() > 0) {
+                builder.append(" | ");
+            }
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+
+    static class TestAdapter extends MoSectionedAdapter<String, String, TestAdapter.Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindHeader(Holder holder, int section, String header) {
+        }
+
+        @Override
+        protected void onBindItem(Holder holder, int section, int offset, String item) {
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
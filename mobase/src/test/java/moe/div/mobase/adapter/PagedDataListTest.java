@@ -0,0 +1,201 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  14:30
+ * @desc 分页数据的淘汰：可见范围内的页不会被淘汰，预加载的页不会排到可见的页前面，
+ * 反复读取可见范围不会重新加载；多类型适配器对没加载的项使用占位视图类型
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PagedDataListTest {
+
+    private static final int TOTAL = 100;
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int MAX_PAGES = 3;
+
+    private RecordingLoader mLoader;
+
+    private PagedDataList<String> mList;
+
+    @Before
+    public void setUp() {
+        mLoader = new RecordingLoader();
+        mList = new PagedDataList<String>(TOTAL, PAGE_SIZE, MAX_PAGES, mLoader);
+    }
+
+    @Test
+    public void prefetchDoesNotEvictVisiblePages() {
+        // 可见10~29在第1、2页，两头靠近页边界，预加载第0、3页
+        mList.setVisibleRange(10, 29);
+        for (int frame = 0; frame < 5; frame++) {
+            readRange(10, 29);
+            flush();
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), mLoader.mRequested.subList(0, 4));
+        assertEquals(1, mLoader.count(1));
+        assertEquals(1, mLoader.count(2));
+        assertTrue(mList.isLoaded(10));
+        assertTrue(mList.isLoaded(29));
+        assertEquals(MAX_PAGES, mList.getLoadedPageCount());
+    }
+
+    @Test
+    public void prefetchIsEvictedBeforeReadPagesWithoutVisibleRange() {
+        readRange(10, 29);
+        flush();
+
+        // 第3页加载回来时淘汰预加载的第0页，而不是读取过的第1、2页
+        assertTrue(mList.isLoaded(10));
+        assertTrue(mList.isLoaded(29));
+        assertEquals(MAX_PAGES, mList.getLoadedPageCount());
+        assertFalse(mList.isLoaded(0));
+        assertTrue(mList.isLoaded(30));
+    }
+
+    @Test
+    public void scrollingEvictsPagesLeftBehind() {
+        for (int first = 0; first + PAGE_SIZE <= TOTAL; first += PAGE_SIZE / 2) {
+            int last = first + PAGE_SIZE - 1;
+            mList.setVisibleRange(first, last);
+            readRange(first, last);
+            flush();
+            assertTrue("first visible " + first, mList.isLoaded(first));
+            assertTrue("last visible " + last, mList.isLoaded(last));
+            assertTrue(mList.getLoadedPageCount() <= MAX_PAGES);
+        }
+        assertFalse(mList.isLoaded(0));
+        for (int page = 0; page < TOTAL / PAGE_SIZE; page++) {
+            assertEquals("page " + page, 1, mLoader.count(page));
+        }
+    }
+
+    @Test
+    public void visibleRangeWiderThanBudgetKeepsAllVisiblePages() {
+        mList.setVisibleRange(0, 49);
+        readRange(0, 49);
+        flush();
+        assertEquals(6, mList.getLoadedPageCount());
+        for (int index = 0; index < 50; index += PAGE_SIZE) {
+            assertTrue("index " + index, mList.isLoaded(index));
+        }
+
+        // 可见范围缩小后立即淘汰到上限以内
+        mList.setVisibleRange(40, 49);
+        assertEquals(MAX_PAGES, mList.getLoadedPageCount());
+        assertTrue(mList.isLoaded(40));
+    }
+
+    @Test
+    public void multiTypeAdapterUsesPlaceholderUntilPageLoads() {
+        MoMultiTypeAdapter<String> adapter = new MoMultiTypeAdapter<String>();
+        adapter.register(String.class, 1, new TextDelegate());
+        adapter.setPlaceholderDelegate(new PlaceholderDelegate());
+        adapter.setPagedData(mList);
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        assertEquals(TOTAL, adapter.getItemCount());
+        assertEquals(MoMultiTypeAdapter.TYPE_PLACEHOLDER_VIEW, adapter.getItemViewType(5));
+        assertNull(adapter.getItem(5));
+        flush();
+
+        assertEquals(Arrays.asList("change 0,10"), observer.mEvents);
+        assertEquals(1, adapter.getItemViewType(5));
+        assertEquals("p5", adapter.getItem(5));
+    }
+
+    private void readRange(int first, int last) {
+        for (int index = first; index <= last; index++) {
+            mList.get(index);
+        }
+    }
+
+    private void flush() {
+        // 加载结果通过主线程消息回来
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    /**
+     * 立即返回数据，记录每次加载的页码
+     */
+    static final class RecordingLoader implements PagedDataList.PageLoader<String> {
+
+        final List<Integer> mRequested = new ArrayList<Integer>();
+
+        @Override
+        public void loadPage(int page, int start, int count, PagedDataList<String>.PageCallback callback) {
+            mRequested.add(page);
+            List<String> items = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                items.add("p" + (start + i));
+            }
+            callback.onLoaded(items);
+        }
+
+        int count(int page) {
+            int count = 0;
+            for (int requested : mRequested) {
+                if (requested == page) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    static final class TextDelegate extends ItemViewDelegate<String, Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, String item, int position) {
+        }
+    }
+
+    static final class PlaceholderDelegate extends ItemViewDelegate<Void, Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, Void item, int position) {
+        }
+    }
+
+    static class Holder extends RecyclerView.ViewHolder {
+
+        Holder(View itemView) {
+            super(itemView);
+        }
+    }
+}
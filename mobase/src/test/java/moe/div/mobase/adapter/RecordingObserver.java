@@ -0,0 +1,41 @@
+package moe.div.mobase.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  10:40
+ * @desc 按顺序记录适配器发出的通知，测试里和期望的通知序列比较
+ */
+final class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+    final List<String> mEvents = new ArrayList<String>();
+
+    @Override
+    public void onChanged() {
+        mEvents.add("changed");
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+        mEvents.add("change " + positionStart + "," + itemCount + (payload == null ? "" : " " + payload));
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        mEvents.add("insert " + positionStart + "," + itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        mEvents.add("remove " + positionStart + "," + itemCount);
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        mEvents.add("move " + fromPosition + ">" + toPosition);
+    }
+}
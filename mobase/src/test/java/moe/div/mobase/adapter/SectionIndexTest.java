@@ -0,0 +1,95 @@
+package moe.div.mobase.adapter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/12  11:00
+ * @desc 分组位置索引：平铺索引和(组, 组内偏移)的互相换算，固定用例覆盖空组，
+ * 随机用例在多次修改单组数量之后和逐项累加的朴素实现对照
+ */
+public class SectionIndexTest {
+
+    private static final int RANDOM_CASES = 2000;
+
+    private static final long SEED = 20200712L;
+
+    @Test
+    public void mapsHeadersItemsAndEmptySections() {
+        SectionIndex index = new SectionIndex();
+        // 头A 子 子 | 头B | 头C 子
+        index.setItemCounts(new int[]{2, 0, 1});
+
+        assertEquals(6, index.getTotalCount());
+        assertEquals(0, index.getSectionStart(0));
+        assertEquals(3, index.getSectionStart(1));
+        assertEquals(4, index.getSectionStart(2));
+        int[] sections = {0, 0, 0, 1, 2, 2};
+        int[] offsets = {-1, 0, 1, -1, -1, 0};
+        for (int position = 0; position < 6; position++) {
+            assertEquals(sections[position], index.getSectionForPosition(position));
+            assertEquals(offsets[position], index.getOffsetInSection(position));
+            assertEquals(offsets[position] < 0, index.isHeader(position));
+        }
+    }
+
+    @Test
+    public void setItemCountShiftsLaterSections() {
+        SectionIndex index = new SectionIndex();
+        index.setItemCounts(new int[]{2, 0, 1});
+        index.setItemCount(1, 3);
+
+        assertEquals(9, index.getTotalCount());
+        assertEquals(3, index.getItemCount(1));
+        assertEquals(7, index.getSectionStart(2));
+        assertEquals(1, index.getSectionForPosition(6));
+        assertEquals(2, index.getOffsetInSection(6));
+        assertTrue(index.isHeader(7));
+        assertFalse(index.isHeader(8));
+    }
+
+    @Test
+    public void matchesNaivePrefixSums() {
+        Random random = new Random(SEED);
+        SectionIndex index = new SectionIndex();
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            int[] counts = new int[random.nextInt(40)];
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = randomCount(random);
+            }
+            index.setItemCounts(counts);
+            int changes = counts.length == 0 ? 0 : random.nextInt(8);
+            for (int c = 0; c < changes; c++) {
+                int section = random.nextInt(counts.length);
+                counts[section] = randomCount(random);
+                index.setItemCount(section, counts[section]);
+            }
+            assertMatchesNaive("case " + i, index, counts);
+        }
+    }
+
+    private static int randomCount(Random random) {
+        return random.nextInt(4) == 0 ? 0 : random.nextInt(10);
+    }
+
+    private static void assertMatchesNaive(String message, SectionIndex index, int[] counts) {
+        assertEquals(message, counts.length, index.getSectionCount());
+        int position = 0;
+        for (int section = 0; section < counts.length; section++) {
+            assertEquals(message, counts[section], index.getItemCount(section));
+            assertEquals(message, position, index.getSectionStart(section));
+            for (int offset = -1; offset < counts[section]; offset++) {
+                assertEquals(message, section, index.getSectionForPosition(position));
+                assertEquals(message, offset, index.getOffsetInSection(position));
+                position++;
+            }
+        }
+        assertEquals(message, position, index.getTotalCount());
+    }
+}
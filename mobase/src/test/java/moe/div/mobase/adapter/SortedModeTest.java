@@ -0,0 +1,148 @@
+package moe.div.mobase.adapter;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/13  14:20
+ * @desc 有序模式：插入到二分查找的位置，排序字段变化的更新转成移动加更新，
+ * 批量插入归并后连续的位置合并成一次范围通知
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SortedModeTest {
+
+    private TestAdapter mAdapter;
+
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter();
+        mAdapter.setData(new ArrayList<Item>(Arrays.asList(
+                new Item(3, 30), new Item(1, 10), new Item(2, 20))));
+        mAdapter.setSortedMode(new Comparator<Item>() {
+            @Override
+            public int compare(Item o1, Item o2) {
+                return o1.rank - o2.rank;
+            }
+        }, new MoBaseRecyclerAdapter.KeyExtractor<Item>() {
+            @Override
+            public long getKey(Item item) {
+                return item.key;
+            }
+        });
+        mObserver = new RecordingObserver();
+        mAdapter.registerAdapterDataObserver(mObserver);
+    }
+
+    @Test
+    public void insertUsesSortedPosition() {
+        assertEquals("1:10 2:20 3:30", texts());
+
+        assertEquals(2, mAdapter.addSorted(new Item(4, 25)));
+        // 排序值相同的新数据排在后面
+        assertEquals(3, mAdapter.addSorted(new Item(5, 25)));
+        assertEquals(0, mAdapter.addSorted(new Item(6, 5)));
+
+        assertEquals("6:5 1:10 2:20 4:25 5:25 3:30", texts());
+        assertEquals(Arrays.asList("insert 2,1", "insert 3,1", "insert 0,1"), mObserver.mEvents);
+    }
+
+    @Test
+    public void updateMovesWhenRankChanges() {
+        assertEquals(2, mAdapter.updateSorted(new Item(1, 35), "p"));
+        assertEquals("2:20 3:30 1:35", texts());
+        assertEquals(Arrays.asList("move 0>2", "change 2,1 p"), mObserver.mEvents);
+
+        // 排序位置没变时原地替换
+        mObserver.mEvents.clear();
+        assertEquals(1, mAdapter.updateSorted(new Item(3, 31), "p"));
+        assertEquals("2:20 3:31 1:35", texts());
+        assertEquals(Collections.singletonList("change 1,1 p"), mObserver.mEvents);
+
+        mObserver.mEvents.clear();
+        assertTrue(mAdapter.removeSorted(3));
+        assertFalse(mAdapter.removeSorted(3));
+        assertEquals("2:20 1:35", texts());
+        assertEquals(Collections.singletonList("remove 1,1"), mObserver.mEvents);
+    }
+
+    @Test
+    public void addAllMergesInsertions() {
+        mAdapter.addSorted(Arrays.asList(
+                new Item(7, 40), new Item(5, 15), new Item(6, 16),
+                // 已有的唯一键按更新处理，同一批里重复的以后来的为准
+                new Item(2, 21), new Item(8, 99), new Item(8, 17)));
+
+        assertEquals("1:10 5:15 6:16 8:17 2:21 3:30 7:40", texts());
+        assertEquals(Arrays.asList("change 1,1", "insert 1,3", "insert 6,1"), mObserver.mEvents);
+
+        // 之后的插入作用在归并后的数据上
+        mObserver.mEvents.clear();
+        assertEquals(7, mAdapter.addSorted(new Item(9, 50)));
+        assertEquals(Collections.singletonList("insert 7,1"), mObserver.mEvents);
+    }
+
+    private String texts() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mAdapter.getItemCount(); i++) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            Item item = mAdapter.getItem(i);
+            builder.append(item.key).append(':').append(item.rank);
+        }
+        return builder.toString();
+    }
+
+    static final class Item {
+
+        final long key;
+
+        final int rank;
+
+        Item(long key, int rank) {
+            this.key = key;
+            this.rank = rank;
+        }
+    }
+
+    static class TestAdapter extends MoBaseRecyclerAdapter<Item, TestAdapter.Holder> {
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new Holder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
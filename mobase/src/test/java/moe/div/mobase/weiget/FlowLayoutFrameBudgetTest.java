@@ -0,0 +1,286 @@
+package moe.div.mobase.weiget;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import moe.div.mobase.adapter.MoBaseRecyclerAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/11  19:30
+ * @desc 每帧的测量、布局次数和内存分配预算：通过MoBaseRecyclerAdapter把标签行放进真实的RecyclerView滚动，
+ * 每帧统计所有FlowLayout的计数，超过预算就失败，用来发现多余的测量、布局和绑定路径上的分配
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class FlowLayoutFrameBudgetTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private static final int ROW_COUNT = 500;
+    private static final int TAGS_PER_ROW = 12;
+    private static final int TAG_HEIGHT = 96;
+
+    /**
+     * 每帧滚动距离，约等于每秒3600像素的快速滑动
+     */
+    private static final int FRAME_DY = 60;
+
+    /**
+     * 预热的帧数，缓存池填满、JIT完成之后再统计
+     */
+    private static final int WARMUP_FRAMES = 100;
+
+    private static final int MEASURED_FRAMES = 300;
+
+    /**
+     * 滚动时每帧平均分配的内存预算，字节。复用ViewHolder后绑定和测量路径本身不应该分配，
+     * 这里留出框架和Robolectric自身的余量
+     */
+    private static final long FRAME_ALLOCATION_BUDGET = 32 * 1024;
+
+    private RecyclerView mRecyclerView;
+
+    private RowAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        Random random = new Random(7);
+        List<int[]> rows = new ArrayList<int[]>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            int[] widths = new int[TAGS_PER_ROW];
+            for (int k = 0; k < TAGS_PER_ROW; k++) {
+                widths[k] = 80 + random.nextInt(220);
+            }
+            rows.add(widths);
+        }
+        mAdapter = new RowAdapter();
+        mAdapter.setData(rows);
+        mRecyclerView = new RecyclerView(context);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(context));
+        mRecyclerView.setAdapter(mAdapter);
+        measureAndLayout(mRecyclerView, WIDTH, HEIGHT);
+        mAdapter.resetCounts();
+    }
+
+    /**
+     * 滚动时只有新绑定的行测量、布局一次，已经在屏幕上的行只是平移，不应该再测量或布局
+     */
+    @Test
+    public void scrollMeasuresOnlyReboundRows() {
+        int totalBinds = 0;
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            runFrame();
+            int binds = mAdapter.mBindCount;
+            String message = "frame " + frame + ", rebound rows " + binds;
+            assertTrue(message + ", measure passes " + mAdapter.sumMeasurePasses(),
+                    mAdapter.sumMeasurePasses() <= binds);
+            assertTrue(message + ", layout passes " + mAdapter.sumLayoutPasses(),
+                    mAdapter.sumLayoutPasses() <= binds);
+            assertTrue(message + ", child measures " + mAdapter.sumChildMeasures(),
+                    mAdapter.sumChildMeasures() <= binds * TAGS_PER_ROW);
+            assertTrue(message + ", child layouts " + mAdapter.sumChildLayouts(),
+                    mAdapter.sumChildLayouts() <= binds * TAGS_PER_ROW);
+            totalBinds += binds;
+            mAdapter.resetCounts();
+        }
+        // 确认真的滚动并复用了行，而不是什么都没发生
+        assertTrue("no rows were rebound", totalBinds > 0);
+        assertTrue("holders were not reused", mAdapter.mLayouts.size() < totalBinds);
+    }
+
+    /**
+     * 缓存池填满之后，滚动每帧的平均分配不超过预算
+     */
+    @Test
+    public void scrollAllocationStaysWithinBudget() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation counting not supported",
+                bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+            runFrame();
+        }
+        mAdapter.resetCounts();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            runFrame();
+        }
+        long perFrame = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_FRAMES;
+
+        assertTrue("rows were not rebound", mAdapter.mBindCount > 0);
+        assertTrue("allocated " + perFrame + " bytes per frame, budget " + FRAME_ALLOCATION_BUDGET,
+                perFrame <= FRAME_ALLOCATION_BUDGET);
+    }
+
+    /**
+     * 一个标签请求布局但尺寸不变时，只重新测量、布局这一个标签
+     */
+    @Test
+    public void relayoutOneTagTouchesOnlyThatTag() {
+        FlowLayout row = (FlowLayout) mRecyclerView.getChildAt(0);
+        row.resetPassCounts();
+        View tag = row.getChildAt(TAGS_PER_ROW / 2);
+        tag.setLayoutParams(tag.getLayoutParams());
+        measureAndLayout(mRecyclerView, WIDTH, HEIGHT);
+
+        assertEquals(1, row.getMeasurePassCount());
+        assertEquals(1, row.getLayoutPassCount());
+        assertEquals(1, row.getChildMeasureCount());
+        assertEquals(1, row.getChildLayoutCount());
+    }
+
+    /**
+     * 达到最大行数后剩下的标签不测量：两行各放得下10个，只测量到第21个
+     */
+    @Test
+    public void maxLinesStopsMeasuringHiddenTags() {
+        Context context = RuntimeEnvironment.getApplication();
+        FlowLayout layout = new FlowLayout(context);
+        layout.setMaxLines(2);
+        for (int i = 0; i < 200; i++) {
+            layout.addView(newTag(context, WIDTH / 10));
+        }
+        measureAndLayout(layout, WIDTH, HEIGHT);
+
+        assertEquals(1, layout.getMeasurePassCount());
+        assertEquals(21, layout.getChildMeasureCount());
+        assertEquals(20, layout.getChildLayoutCount());
+        assertEquals(2 * TAG_HEIGHT, layout.getMeasuredHeight());
+    }
+
+    /**
+     * 一帧：滚动后如果有布局请求再走一遍测量和布局，和Choreographer的一次遍历对应
+     */
+    private void runFrame() {
+        if (!mRecyclerView.canScrollVertically(1)) {
+            mRecyclerView.scrollToPosition(0);
+        } else {
+            mRecyclerView.scrollBy(0, FRAME_DY);
+        }
+        if (mRecyclerView.isLayoutRequested()) {
+            measureAndLayout(mRecyclerView, WIDTH, HEIGHT);
+        }
+    }
+
+    private static void measureAndLayout(View view, int width, int height) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.AT_MOST));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    private static View newTag(Context context, int width) {
+        View tag = new View(context);
+        tag.setLayoutParams(new ViewGroup.MarginLayoutParams(width, TAG_HEIGHT));
+        return tag;
+    }
+
+    /**
+     * 每行是一个FlowLayout，数据是每个标签的宽度，绑定时只改标签的宽度
+     */
+    static class RowAdapter extends MoBaseRecyclerAdapter<int[], RowAdapter.Holder> {
+
+        /**
+         * 创建过的所有行，包括缓存池里的
+         */
+        final List<FlowLayout> mLayouts = new ArrayList<FlowLayout>();
+
+        int mBindCount;
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            FlowLayout layout = new FlowLayout(parent.getContext());
+            layout.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+            for (int i = 0; i < TAGS_PER_ROW; i++) {
+                layout.addView(newTag(parent.getContext(), 0));
+            }
+            mLayouts.add(layout);
+            return new Holder(layout);
+        }
+
+        @Override
+        protected void onBindData(Holder holder, int position) {
+            mBindCount++;
+            int[] widths = getData().get(position);
+            FlowLayout layout = (FlowLayout) holder.itemView;
+            for (int i = 0; i < TAGS_PER_ROW; i++) {
+                View tag = layout.getChildAt(i);
+                ViewGroup.LayoutParams lp = tag.getLayoutParams();
+                lp.width = widths[i];
+                tag.setLayoutParams(lp);
+            }
+        }
+
+        void resetCounts() {
+            mBindCount = 0;
+            for (FlowLayout layout : mLayouts) {
+                layout.resetPassCounts();
+            }
+        }
+
+        int sumMeasurePasses() {
+            int sum = 0;
+            for (FlowLayout layout : mLayouts) {
+                sum += layout.getMeasurePassCount();
+            }
+            return sum;
+        }
+
+        int sumLayoutPasses() {
+            int sum = 0;
+            for (FlowLayout layout : mLayouts) {
+                sum += layout.getLayoutPassCount();
+            }
+            return sum;
+        }
+
+        int sumChildMeasures() {
+            int sum = 0;
+            for (FlowLayout layout : mLayouts) {
+                sum += layout.getChildMeasureCount();
+            }
+            return sum;
+        }
+
+        int sumChildLayouts() {
+            int sum = 0;
+            for (FlowLayout layout : mLayouts) {
+                sum += layout.getChildLayoutCount();
+            }
+            return sum;
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+
+            Holder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+}
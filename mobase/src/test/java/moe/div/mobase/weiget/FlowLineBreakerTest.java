@@ -0,0 +1,207 @@
+package moe.div.mobase.weiget;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author 林墨
+ * @time 20/7/11  15:30
+ * @desc 换行计算：固定用例检查换行、不参与布局的子控件、最大行数和省略提示；
+ * 随机用例检查从某一行restart()后的结果和从头计算完全一致，并和逐个放置的朴素实现对照
+ */
+public class FlowLineBreakerTest {
+
+    /**
+     * 随机用例数量，种子固定，失败时可以复现
+     */
+    private static final int RANDOM_CASES = 20000;
+
+    private static final long SEED = 20200711L;
+
+    @Test
+    public void breaksWhenLineIsFull() {
+        FlowLineBreaker breaker = newBreaker(100, Integer.MAX_VALUE);
+        feed(breaker, new int[]{40, 40, 40, 60, 100}, new int[]{10, 20, 5, 8, 8}, 0);
+
+        assertEquals(3, breaker.getLineCount());
+        assertEquals(0, breaker.getLineStart(0));
+        assertEquals(2, breaker.getLineStart(1));
+        assertEquals(4, breaker.getLineStart(2));
+        assertEquals(20, breaker.getLineHeight(0));
+        assertEquals(20, breaker.getLineTop(1));
+        assertEquals(28, breaker.getLineTop(2));
+        assertEquals(5, breaker.getLineEnd(2));
+        assertEquals(40, breaker.getChildLeft(1));
+        assertEquals(40, breaker.getChildLeft(3));
+        assertEquals(100, breaker.getContentWidth());
+        assertEquals(36, breaker.getContentHeight());
+    }
+
+    @Test
+    public void oversizedChildTakesItsOwnLine() {
+        FlowLineBreaker breaker = newBreaker(50, Integer.MAX_VALUE);
+        feed(breaker, new int[]{80, 10}, new int[]{10, 10}, 0);
+
+        assertEquals(2, breaker.getLineCount());
+        assertEquals(1, breaker.getLineStart(1));
+        assertEquals(80, breaker.getContentWidth());
+    }
+
+    @Test
+    public void goneChildrenTakeNoSpace() {
+        FlowLineBreaker breaker = newBreaker(100, Integer.MAX_VALUE);
+        feed(breaker, new int[]{FlowLineBreaker.GONE, 60, FlowLineBreaker.GONE, 40, 10},
+                new int[]{0, 10, 0, 10, 10}, 0);
+
+        assertEquals(2, breaker.getLineCount());
+        assertEquals(60, breaker.getChildLeft(2));
+        assertEquals(60, breaker.getChildLeft(3));
+        assertEquals(4, breaker.getLineStart(1));
+        assertEquals(5, breaker.getVisibleEnd());
+    }
+
+    @Test
+    public void maxLinesStopsAppending() {
+        FlowLineBreaker breaker = newBreaker(100, 2);
+        assertTrue(breaker.append(60, 10));
+        assertTrue(breaker.append(60, 10));
+        assertFalse(breaker.append(60, 10));
+        assertFalse(breaker.append(10, 10));
+        breaker.finish();
+
+        assertTrue(breaker.isFull());
+        assertEquals(2, breaker.getLineCount());
+        assertEquals(2, breaker.getVisibleEnd());
+        assertEquals(20, breaker.getContentHeight());
+    }
+
+    @Test
+    public void overflowDropsLastChildUntilItFits() {
+        FlowLineBreaker breaker = newBreaker(100, 1);
+        feed(breaker, new int[]{40, 40, 40}, new int[]{10, 10, 10}, 0);
+        assertEquals(2, breaker.getVisibleEnd());
+
+        assertFalse(breaker.fitOverflow(30, 10));
+        assertEquals(1, breaker.getVisibleEnd());
+        assertTrue(breaker.fitOverflow(30, 10));
+        assertEquals(40, breaker.getOverflowLeft());
+        assertEquals(70, breaker.getContentWidth());
+    }
+
+    @Test
+    public void restartMatchesFullRecompute() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            int count = random.nextInt(40);
+            int maxWidth = 50 + random.nextInt(100);
+            int maxLines = random.nextInt(4) == 0 ? Integer.MAX_VALUE : 1 + random.nextInt(6);
+            int[] width = new int[count];
+            int[] height = new int[count];
+            for (int k = 0; k < count; k++) {
+                width[k] = randomWidth(random);
+                height[k] = 1 + random.nextInt(20);
+            }
+            FlowLineBreaker incremental = newBreaker(maxWidth, maxLines);
+            feed(incremental, width, height, 0);
+
+            // 连续修改几个子控件，每次都从受影响的行重新计算
+            int changes = count == 0 ? 0 : 1 + random.nextInt(3);
+            for (int c = 0; c < changes; c++) {
+                int changed = random.nextInt(count);
+                width[changed] = randomWidth(random);
+                height[changed] = 1 + random.nextInt(20);
+                int from = incremental.restart(incremental.getLineForChild(Math.max(0, changed - 1)));
+                feed(incremental, width, height, from);
+            }
+
+            FlowLineBreaker full = newBreaker(maxWidth, maxLines);
+            feed(full, width, height, 0);
+            String message = "case " + i + ": " + Arrays.toString(width)
+                    + " maxWidth=" + maxWidth + " maxLines=" + maxLines;
+            assertSameLayout(message, full, incremental);
+            assertMatchesNaive(message, full, width, maxWidth, maxLines);
+        }
+    }
+
+    private static int randomWidth(Random random) {
+        return random.nextInt(10) == 0 ? FlowLineBreaker.GONE : 1 + random.nextInt(60);
+    }
+
+    private static FlowLineBreaker newBreaker(int maxWidth, int maxLines) {
+        FlowLineBreaker breaker = new FlowLineBreaker();
+        breaker.setMaxWidth(maxWidth);
+        breaker.setMaxLines(maxLines);
+        return breaker;
+    }
+
+    /**
+     * 和FlowLayout一样逐个追加，达到最大行数时停止
+     */
+    private static void feed(FlowLineBreaker breaker, int[] width, int[] height, int from) {
+        for (int i = from; i < width.length; i++) {
+            if (width[i] == FlowLineBreaker.GONE) {
+                breaker.appendGone();
+            } else if (!breaker.append(width[i], height[i])) {
+                break;
+            }
+        }
+        breaker.finish();
+    }
+
+    private static void assertSameLayout(String message, FlowLineBreaker expected, FlowLineBreaker actual) {
+        assertEquals(message, expected.getLineCount(), actual.getLineCount());
+        assertEquals(message, expected.getVisibleEnd(), actual.getVisibleEnd());
+        assertEquals(message, expected.isFull(), actual.isFull());
+        assertEquals(message, expected.getContentWidth(), actual.getContentWidth());
+        assertEquals(message, expected.getContentHeight(), actual.getContentHeight());
+        for (int line = 0; line < expected.getLineCount(); line++) {
+            assertEquals(message, expected.getLineStart(line), actual.getLineStart(line));
+            assertEquals(message, expected.getLineTop(line), actual.getLineTop(line));
+            assertEquals(message, expected.getLineHeight(line), actual.getLineHeight(line));
+        }
+        for (int i = 0; i < expected.getVisibleEnd(); i++) {
+            if (expected.getChildWidth(i) != FlowLineBreaker.GONE) {
+                assertEquals(message, expected.getChildLeft(i), actual.getChildLeft(i));
+            }
+        }
+    }
+
+    /**
+     * 不缓存任何东西的朴素实现，逐个子控件放置
+     */
+    private static void assertMatchesNaive(String message, FlowLineBreaker breaker, int[] width,
+                                           int maxWidth, int maxLines) {
+        int lines = 0;
+        int lineWidth = 0;
+        int visibleEnd = width.length;
+        int[] left = new int[width.length];
+        for (int i = 0; i < width.length; i++) {
+            if (width[i] == FlowLineBreaker.GONE) {
+                continue;
+            }
+            if (lines == 0 || (lineWidth > 0 && lineWidth + width[i] > maxWidth)) {
+                if (lines == maxLines) {
+                    visibleEnd = i;
+                    break;
+                }
+                lines++;
+                lineWidth = 0;
+            }
+            left[i] = lineWidth;
+            lineWidth += width[i];
+        }
+        assertEquals(message, lines, breaker.getLineCount());
+        assertEquals(message, visibleEnd, breaker.getVisibleEnd());
+        for (int i = 0; i < visibleEnd; i++) {
+            if (width[i] != FlowLineBreaker.GONE) {
+                assertEquals(message, left[i], breaker.getChildLeft(i));
+            }
+        }
+    }
+}